@@ -1,22 +1,190 @@
 package nl.iobyte.serviceloader;
 
+import nl.iobyte.serviceloader.annotations.Inject;
+import nl.iobyte.serviceloader.cache.CachedMethod;
 import nl.iobyte.serviceloader.dag.DAG;
+import nl.iobyte.serviceloader.enums.LifecycleEventType;
+import nl.iobyte.serviceloader.enums.LoaderOption;
 import nl.iobyte.serviceloader.enums.ServiceState;
+import nl.iobyte.serviceloader.events.EventBus;
+import nl.iobyte.serviceloader.events.LifecycleDispatcher;
+import nl.iobyte.serviceloader.interfaces.ILifecycleListener;
 import nl.iobyte.serviceloader.interfaces.IService;
+import nl.iobyte.serviceloader.metrics.ServiceMetrics;
 import nl.iobyte.serviceloader.objects.ServiceContainer;
+import nl.iobyte.serviceloader.objects.Shards;
+import nl.iobyte.serviceloader.objects.StartupProgress;
+import nl.iobyte.serviceloader.objects.StartupResult;
+import nl.iobyte.serviceloader.objects.TimingHistory;
 import nl.iobyte.serviceloader.reflections.ReflectionType;
+import nl.iobyte.serviceloader.scheduler.TimingWheel;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class ServiceLoader {
 
+    private static final System.Logger LOGGER = System.getLogger(ServiceLoader.class.getName());
+
     private final DAG<Class<? extends IService>> dag = new DAG<>();
     private final Map<Class<? extends IService>, ServiceContainer<? extends IService>> containers = new ConcurrentHashMap<>();
+    private final AtomicReference<Map<Class<?>, List<?>>> bindings = new AtomicReference<>(new ConcurrentHashMap<>());
+    private final Set<Class<?>> boundTypes = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock bindingUpdates = new ReentrantLock();
+    private final Map<Class<?>, ServiceMetrics> metrics = new ConcurrentHashMap<>();
     private final AtomicReference<ServiceState> state = new AtomicReference<>(ServiceState.NONE);
+    private final Set<LoaderOption> options = EnumSet.noneOf(LoaderOption.class);
+    private final EventBus eventBus = new EventBus();
+    private final LifecycleDispatcher lifecycleDispatcher = new LifecycleDispatcher();
+    private final TimingWheel scheduler = new TimingWheel();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private volatile Duration warmupTimeout = Duration.ofSeconds(30);
+    private volatile Duration drainTimeout = Duration.ofSeconds(30);
+    private volatile TimingHistory timingHistory;
+    private volatile int startupParallelism = Integer.MAX_VALUE;
+    private final Map<Class<? extends IService>, Long> initDurations = new ConcurrentHashMap<>();
+    private final AtomicReference<StartupProgress> startupProgress = new AtomicReference<>(null);
+    private final AtomicReference<Thread> shutdownHook = new AtomicReference<>(null);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock transitions = new ReentrantLock();
+    private final ThreadLocal<Map<Class<? extends IService>, ServiceContainer<? extends IService>>> staged = new ThreadLocal<>();
+    private final ClassValue<CompletableFuture<Void>> preloads = new ClassValue<>() {
+        @Override
+        protected CompletableFuture<Void> computeValue(Class<?> type) {
+            return CompletableFuture.runAsync(() -> preload(type), executor);
+        }
+    };
+
+    public ServiceLoader(LoaderOption... options) {
+        this.options.addAll(List.of(options));
+    }
+
+    /**
+     * Check if loader has option enabled
+     * @param option loader option
+     * @return has option
+     */
+    public boolean hasOption(LoaderOption option) {
+        return options.contains(option);
+    }
+
+    /**
+     * Get event bus services subscribe to
+     * @return event bus
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Get dispatcher delivering lifecycle events to listeners
+     * @return lifecycle dispatcher
+     */
+    public LifecycleDispatcher getLifecycleDispatcher() {
+        return lifecycleDispatcher;
+    }
+
+    /**
+     * Add listener receiving registered, initialized, started, stopped and failed events of services,
+     * delivered on a dispatcher thread so a slow listener never holds up a lifecycle transition
+     * @param listener lifecycle listener
+     */
+    public void addLifecycleListener(ILifecycleListener listener) {
+        lifecycleDispatcher.addListener(listener);
+    }
+
+    /**
+     * Remove lifecycle listener
+     * @param listener lifecycle listener
+     */
+    public void removeLifecycleListener(ILifecycleListener listener) {
+        lifecycleDispatcher.removeListener(listener);
+    }
+
+    /**
+     * Get scheduler running scheduled service methods
+     * @return timing wheel
+     */
+    public TimingWheel getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Get latency histograms of services bound by interface, recorded when the metrics option is enabled
+     * @return immutable map of service type to metrics
+     */
+    public Map<Class<?>, ServiceMetrics> getMetrics() {
+        return Map.copyOf(metrics);
+    }
+
+    /**
+     * Get latency histograms of service bound by interface
+     * @param type service type
+     * @return metrics, or null if service is not measured
+     */
+    public ServiceMetrics getMetrics(Class<?> type) {
+        return metrics.get(type);
+    }
+
+    /**
+     * Get executor running async service methods, shut down when the loader stops
+     * @return virtual thread executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Get caches of cacheable methods of service, for reading their hit and miss counters
+     * @param type service type
+     * @return map of interface method to cache, empty if service has none or is not initialized
+     */
+    public Map<Method, CachedMethod> getCaches(Class<?> type) {
+        return Optional.ofNullable(containers.get(type))
+                       .map(ServiceContainer::getCaches)
+                       .orElse(Map.of());
+    }
+
+    /**
+     * Get registered containers, ordered so every container comes after its dependencies
+     * @return list of containers
+     */
+    public List<ServiceContainer<? extends IService>> getContainers() {
+        List<ServiceContainer<? extends IService>> list = new ArrayList<>();
+        dag.visitReverse(node -> Optional.ofNullable(containers.get(node.getObject())).ifPresent(list::add));
+        return list;
+    }
 
     /**
      * Register service
@@ -25,29 +193,19 @@ public class ServiceLoader {
      * @param <T>     extends IService
      */
     public <T extends IService> void register(Class<T> service) {
-        ServiceContainer<T> container = new ServiceContainer<>(
-                ReflectionType.of(service),
-                this
-        );
-
-        container.getDependencies().forEach(type -> dag.addEdge(service, type));
-        containers.put(service, container);
-
-        if(state.get().hasInit()) {
-            container.getDependencies()
-                     .stream()
-                     .map(containers::get)
-                     .filter(Objects::nonNull)
-                     .forEach(serviceContainer -> {
-                         serviceContainer.init();
-                         if(state.get().hasStart())
-                             serviceContainer.start();
-                     });
+        bind(service, service);
+    }
 
-            container.init();
-            if(state.get().hasStart())
-                container.start();
-        }
+    /**
+     * Register implementation of service type, resolving and injecting it by type,
+     * registrations run concurrently with each other but never during a lifecycle transition
+     *
+     * @param service        type
+     * @param implementation type
+     * @param <T>            extends IService
+     */
+    public <T extends IService> void bind(Class<T> service, Class<? extends T> implementation) {
+        add(Map.of(service, new ServiceContainer<>(ReflectionType.of(implementation), service, this)));
     }
 
     /**
@@ -55,52 +213,1097 @@ public class ServiceLoader {
      * @param types array of service types
      */
     @SafeVarargs
+    @SuppressWarnings("varargs")
     public final void register(Class<? extends IService>... types) {
-        for(Class<? extends IService> type : types)
-            register(type);
+        //The array is only copied into an immutable list, never written or exposed
+        register(List.of(types));
     }
 
     /**
-     * Initialize services
+     * Register multiple services as one batch, when already running they are initialized and started in dependency order
+     * @param types collection of service types
      */
-    public void init() {
-        if(!state.compareAndSet(ServiceState.NONE, ServiceState.INIT))
+    public void register(Collection<Class<? extends IService>> types) {
+        register(types, -1);
+    }
+
+    /**
+     * Register multiple services in startup tier, overriding their annotations
+     * @param tier tier, 0 for services started before start returns
+     * @param types array of service types
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final void register(int tier, Class<? extends IService>... types) {
+        if(tier < 0)
+            throw new IllegalArgumentException("tier can't be negative");
+
+        register(List.of(types), tier);
+    }
+
+    /**
+     * Register multiple services as one batch
+     * @param types collection of service types
+     * @param tier tier, or -1 to keep the tier of their annotations
+     */
+    private void register(Collection<Class<? extends IService>> types, int tier) {
+        //Analyse later types in the background while the caller works through the first
+        if(hasOption(LoaderOption.PRELOAD))
+            types.forEach(this::preloadAsync);
+
+        Map<Class<? extends IService>, ServiceContainer<?>> batch = new LinkedHashMap<>();
+        for(Class<? extends IService> type : types) {
+            ServiceContainer<?> container = new ServiceContainer<>(ReflectionType.of(type), this);
+            if(tier >= 0)
+                container.setTier(tier);
+
+            batch.put(type, container);
+        }
+
+        add(batch);
+    }
+
+    /**
+     * Discover and register providers of service type declared by modules or META-INF/services files,
+     * providers are only loaded as types and never instantiated by the JDK
+     * @param service service type providers implement
+     * @param <T> extends IService
+     * @return list of discovered provider types
+     */
+    public <T extends IService> List<Class<? extends T>> discover(Class<T> service) {
+        return discover(service, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Discover and register providers of service type visible to class loader,
+     * types already registered are skipped without building their reflection data
+     * @param service service type providers implement
+     * @param classLoader class loader to search
+     * @param <T> extends IService
+     * @return list of discovered provider types
+     */
+    public <T extends IService> List<Class<? extends T>> discover(Class<T> service, ClassLoader classLoader) {
+        List<Class<? extends T>> discovered = java.util.ServiceLoader.load(service, classLoader)
+                                                                    .stream()
+                                                                    .map(java.util.ServiceLoader.Provider::type)
+                                                                    .distinct()
+                                                                    .toList();
+
+        register(discovered.stream()
+                           .filter(type -> !containers.containsKey(type))
+                           .<Class<? extends IService>>map(type -> type)
+                           .toList());
+        return discovered;
+    }
+
+    /**
+     * Add containers to graph, registrations run concurrently with each other but never during a lifecycle transition
+     * @param batch map of service type to container
+     */
+    private void add(Map<Class<? extends IService>, ServiceContainer<?>> batch) {
+        if(batch.isEmpty())
             return;
 
-        dag.update();
-        dag.visitReverse(node -> {
-            ServiceContainer<? extends IService> container = containers.get(node.getObject());
+        if(hasOption(LoaderOption.METRICS))
+            batch.keySet()
+                 .stream()
+                 .filter(Class::isInterface)
+                 .forEach(service -> metrics.computeIfAbsent(service, ServiceMetrics::new));
+
+        if(hasOption(LoaderOption.PRELOAD))
+            batch.values().forEach(container -> preloadAsync(container.getType().getRawType()));
+
+        //Only the graph change excludes transitions, which hold the write lock just long enough to take their snapshot
+        ServiceState current;
+        lock.readLock().lock();
+        try {
+            current = state.get();
+            Map<Class<? extends IService>, List<Class<? extends IService>>> edges = new LinkedHashMap<>();
+            batch.forEach((service, container) -> edges.put(service, container.getDependencies()));
+
+            //Once initialized, a batch closing a cycle or depending on a later tier is rejected before anything changed
+            if(current.hasInit())
+                validateTiers(batch.values(), type -> batch.containsKey(type) ? batch.get(type) : containers.get(type));
+
+            dag.addEdges(edges, current.hasInit());
+            batch.forEach((service, container) -> {
+                containers.put(service, container);
+                lifecycleDispatcher.publish(LifecycleEventType.REGISTERED, service, null);
+            });
+            invalidateBindings();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if(!current.hasInit())
+            return;
+
+        //Bring up the batch after the services it depends on, transitions running meanwhile are harmless
+        //as every container moves forward only once, and a stopped container can't be initialized again
+        List<Class<? extends IService>> affected = dag.getDescendants(batch.keySet());
+        List<ServiceContainer<? extends IService>> deferred = bringUp(affected, current.hasStart());
+
+        //A start that began after reading the state may have passed the batch before it was initialized
+        if(!current.hasStart() && state.get().hasStart())
+            deferred = bringUp(affected, true);
+
+        updateBindings();
+        if(!deferred.isEmpty())
+            startLate(deferred);
+
+        if(state.get() == ServiceState.READY)
+            batch.values()
+                 .stream()
+                 .filter(container -> container.getTier() == 0)
+                 .forEach(ServiceContainer::warmup);
+    }
+
+    /**
+     * Initialize and optionally start registered services, services in later tiers are only initialized
+     * @param types service types, dependencies first
+     * @param start also start services
+     * @return containers in later tiers left to start, dependencies first
+     */
+    private List<ServiceContainer<? extends IService>> bringUp(List<Class<? extends IService>> types, boolean start) {
+        List<ServiceContainer<? extends IService>> deferred = new ArrayList<>();
+        for(Class<? extends IService> type : types) {
+            ServiceContainer<? extends IService> container = containers.get(type);
             if(container == null)
-                throw new IllegalStateException("unknown service "+node.getObject().getSimpleName());
+                continue;
 
             container.init();
+            if(!start || container.getState() != ServiceState.INIT)
+                continue;
+
+            if(container.getTier() > 0) {
+                deferred.add(container);
+            } else {
+                container.start();
+            }
+        }
+
+        return deferred;
+    }
+
+    /**
+     * Start services in later tiers registered after start in the background, once earlier deferred startup is done
+     * @param deferred containers, dependencies first
+     */
+    private void startLate(List<ServiceContainer<? extends IService>> deferred) {
+        List<ServiceContainer<? extends IService>> sorted = new ArrayList<>(deferred);
+        sorted.sort(Comparator.comparingInt(ServiceContainer::getTier));
+        StartupProgress progress = new StartupProgress(sorted.stream().<Class<? extends IService>>map(this::getRegisteredType).toList());
+        StartupProgress previous = startupProgress.getAndSet(progress);
+
+        //Services of this batch may depend on deferred services of an earlier one
+        CompletableFuture<?> earlier = previous == null ? CompletableFuture.completedFuture(null) : previous.getCompletion();
+        earlier.whenComplete((result, failure) -> {
+            try {
+                executor.execute(() -> startDeferred(sorted, progress));
+            } catch(RejectedExecutionException e) {
+                progress.complete();
+            }
         });
     }
 
     /**
-     * Start services
+     * Preload type on the executor, once per class
+     * @param type class type
+     */
+    private void preloadAsync(Class<?> type) {
+        if(executor.isShutdown())
+            return;
+
+        try {
+            preloads.get(type);
+        } catch(RejectedExecutionException e) {
+            //Loader stopped in the meantime, init will load the class itself
+        }
+    }
+
+    /**
+     * Initialize class and build its reflection data, then continue with the services it depends on
+     * @param type class type
+     */
+    private void preload(Class<?> type) {
+        ReflectionType<?> reflection;
+        try {
+            Class.forName(type.getName(), true, type.getClassLoader());
+            reflection = ReflectionType.of(type);
+        } catch(Throwable e) {
+            //Registration or init reports the failure on the caller thread
+            LOGGER.log(System.Logger.Level.DEBUG, "unable to preload "+type.getName(), e);
+            return;
+        }
+
+        Stream.concat(
+                reflection.getGlobalFields()
+                          .stream()
+                          .filter(field -> field.hasAnnotation(Inject.class))
+                          .map(field -> field.getField().getType()),
+                reflection.getConstructors()
+                          .stream()
+                          .flatMap(constructor -> Arrays.stream(constructor.getParameterTypes()))
+        ).filter(IService.class::isAssignableFrom).forEach(this::preloadAsync);
+    }
+
+    /**
+     * Initialize services
+     */
+    public void init() {
+        transitions.lock();
+        try {
+            List<Class<? extends IService>> order;
+            lock.writeLock().lock();
+            try {
+                if(!state.compareAndSet(ServiceState.NONE, ServiceState.INIT))
+                    return;
+
+                dag.update();
+                validateTiers(containers.values(), containers::get);
+                order = getOrder();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            for(Class<? extends IService> type : order) {
+                ServiceContainer<? extends IService> container = containers.get(type);
+                if(container == null)
+                    throw new IllegalStateException("unknown service "+type.getSimpleName());
+
+                long start = System.nanoTime();
+                try {
+                    container.init();
+                } catch(RuntimeException | LinkageError e) {
+                    container.fail(e);
+                    throw e;
+                }
+                initDurations.put(type, System.nanoTime() - start);
+            }
+            updateBindings();
+        } finally {
+            transitions.unlock();
+        }
+    }
+
+    /**
+     * Get services of graph in dependency order, called while holding the write lock so no registration is half done
+     * @return list of service types, dependencies first
+     */
+    private List<Class<? extends IService>> getOrder() {
+        List<Class<? extends IService>> order = new ArrayList<>();
+        dag.visitReverse(node -> order.add(node.getObject()));
+        return order;
+    }
+
+    /**
+     * Check services are in the same or a later tier than the services they depend on
+     * @param checked containers to check
+     * @param lookup container of service type, or null if not registered
+     */
+    private void validateTiers(Collection<? extends ServiceContainer<?>> checked, Function<Class<?>, ServiceContainer<?>> lookup) {
+        checked.forEach(container -> container.getDependencies().forEach(dependency -> {
+            ServiceContainer<?> required = lookup.apply(dependency);
+            if(required != null && required.getTier() > container.getTier())
+                throw new IllegalStateException(
+                        "service "+container.getType().getName()+" in tier "+container.getTier()+
+                        " depends on "+required.getType().getName()+" in later tier "+required.getTier()
+                );
+        }));
+    }
+
+    /**
+     * Start services of tier 0, services in later tiers are started in the background once it is up.
+     * The loader is only ready once every tier started and warmed up.
      */
     public void start() {
-        if(!state.compareAndSet(ServiceState.INIT, ServiceState.START))
+        transitions.lock();
+        try {
+            List<Class<? extends IService>> order;
+            lock.writeLock().lock();
+            try {
+                if(!state.compareAndSet(ServiceState.INIT, ServiceState.START))
+                    return;
+
+                order = getOrder();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            TimingHistory history = timingHistory;
+            List<ServiceContainer<? extends IService>> deferred = new ArrayList<>();
+            for(Class<? extends IService> type : order) {
+                ServiceContainer<? extends IService> container = containers.get(type);
+                if(container.getTier() > 0) {
+                    deferred.add(container);
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    container.start();
+                } catch(RuntimeException | LinkageError e) {
+                    container.fail(e);
+                    throw e;
+                }
+                if(history != null)
+                    history.record(type, initDurations.getOrDefault(type, 0L), System.nanoTime() - start);
+            }
+
+            //Stable sort keeps dependency order within a tier, dependencies are never in a later tier
+            deferred.sort(Comparator.comparingInt(ServiceContainer::getTier));
+            StartupProgress progress = new StartupProgress(deferred.stream().<Class<? extends IService>>map(this::getRegisteredType).toList());
+            if(deferred.isEmpty()) {
+                initDurations.clear();
+                saveTimingHistory();
+                progress.complete();
+            } else {
+                startupProgress.set(progress);
+            }
+
+            warmup(progress);
+            if(!deferred.isEmpty())
+                executor.execute(() -> startDeferred(deferred, progress));
+        } finally {
+            transitions.unlock();
+        }
+    }
+
+    /**
+     * Start and warm up services of later tiers one by one, stopping early when the loader stops
+     * @param deferred containers ordered by tier, dependencies first
+     * @param progress progress to report in
+     */
+    private void startDeferred(List<ServiceContainer<? extends IService>> deferred, StartupProgress progress) {
+        TimingHistory history = timingHistory;
+        try {
+            for(ServiceContainer<? extends IService> container : deferred) {
+                //Lifecycle transitions and rebuilds wait for the service being started, but never the other way around
+                if(!lockDeferred())
+                    break;
+
+                try {
+                    if(container.getTier() != progress.getTier()) {
+                        logTier(progress);
+                        progress.setTier(container.getTier());
+                    }
+
+                    startDeferred(container, progress, history);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            logTier(progress);
+            initDurations.clear();
+            saveTimingHistory();
+        } finally {
+            //Nothing keeps the deferred types once they are up, unless a later batch took over in the meantime
+            startupProgress.compareAndSet(progress, null);
+            progress.complete();
+        }
+    }
+
+    /**
+     * Take read lock for starting a deferred service, giving up once the loader stops
+     * @return true if lock was taken
+     */
+    private boolean lockDeferred() {
+        try {
+            while(!lock.readLock().tryLock(10, TimeUnit.MILLISECONDS)) {
+                if(!state.get().hasStart())
+                    return false;
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        if(state.get().hasStart())
+            return true;
+
+        lock.readLock().unlock();
+        return false;
+    }
+
+    /**
+     * Start and warm up deferred service, unless it was unregistered or rebuilt in the meantime
+     * @param container deferred container
+     * @param progress progress to report in
+     * @param history timing history, or null
+     */
+    private void startDeferred(ServiceContainer<? extends IService> container, StartupProgress progress, TimingHistory history) {
+        Class<? extends IService> type = getRegisteredType(container);
+        ServiceContainer<? extends IService> current = containers.get(type);
+        if(current != container) {
+            //Rebuilds bring their containers up themselves, unregistered services are no longer tracked
+            if(current != null) {
+                progress.markStarted(type);
+            } else {
+                progress.remove(type);
+            }
+            return;
+        }
+
+        Optional<Class<? extends IService>> failed = container.getDependencies()
+                                                              .stream()
+                                                              .filter(progress.getFailed()::containsKey)
+                                                              .findFirst();
+
+        if(failed.isPresent()) {
+            IllegalStateException cause = new IllegalStateException(
+                    "dependency "+failed.get().getSimpleName()+" failed",
+                    progress.getFailed().get(failed.get())
+            );
+            container.fail(cause);
+            progress.markFailed(type, cause);
             return;
+        }
 
-        dag.visitReverse(node -> {
-            ServiceContainer<? extends IService> container = containers.get(node.getObject());
+        //Deferred by an earlier startup as well, which got to it first
+        if(container.getState() == ServiceState.FAILED) {
+            progress.markFailed(type, container.getFailure());
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
             container.start();
+            if(history != null)
+                history.record(type, initDurations.getOrDefault(type, 0L), System.nanoTime() - start);
+
+            container.warmup();
+            progress.markStarted(type);
+        } catch(RuntimeException | LinkageError e) {
+            LOGGER.log(System.Logger.Level.ERROR, "deferred startup of "+container.getType().getName()+" failed", e);
+            container.fail(e);
+            progress.markFailed(type, e);
+        }
+    }
+
+    private void logTier(StartupProgress progress) {
+        if(progress.getTier() > 0)
+            LOGGER.log(System.Logger.Level.INFO, "started tier "+progress.getTier()+", "+progress.getStarted()+" of "+progress.getTotal()+" deferred services up");
+    }
+
+    /**
+     * Get type container is registered as in the graph
+     * @param container service container
+     * @return service type
+     */
+    @SuppressWarnings("unchecked")
+    private Class<? extends IService> getRegisteredType(ServiceContainer<? extends IService> container) {
+        return (Class<? extends IService>) container.getServiceType();
+    }
+
+    /**
+     * Get progress of services in later tiers, started in the background after start or a late registration returned
+     * @return startup progress, or null if no services are being started in the background
+     */
+    public StartupProgress getStartupProgress() {
+        return startupProgress.get();
+    }
+
+    /**
+     * Initialize and start services in parallel, a failing service only takes down the services depending on it.
+     * With a timing history, services heading the longest remaining path of recorded durations go first.
+     * @return result listing started and failed services
+     */
+    public StartupResult startIsolated() {
+        transitions.lock();
+        try {
+            long start = System.nanoTime();
+            List<Class<? extends IService>> order;
+            Map<Class<? extends IService>, Throwable> failures = new ConcurrentHashMap<>();
+            TimingHistory history = timingHistory;
+            //Services never measured all cost the same, averaged once instead of for each of them
+            long fallback = history == null ? 0 : history.getAverageCost();
+            try(ExecutorService starter = Executors.newVirtualThreadPerTaskExecutor()) {
+                CompletableFuture<Void> visited;
+                lock.writeLock().lock();
+                try {
+                    if(!state.compareAndSet(ServiceState.NONE, ServiceState.INIT))
+                        throw new IllegalStateException("services have already been initialized");
+
+                    dag.update();
+                    state.set(ServiceState.START);
+                    order = getOrder();
+
+                    //The visit works on the graph as it is now, later registrations bring themselves up
+                    visited = dag.visitReverseAsync(node -> {
+                        Class<? extends IService> type = node.getObject();
+                        ServiceContainer<? extends IService> container = containers.get(type);
+                        if(container == null) {
+                            failures.put(type, new IllegalStateException("unknown service "+type.getSimpleName()));
+                            return;
+                        }
+
+                        //Fail dependents of failed services without touching them
+                        Optional<Class<? extends IService>> failed = container.getDependencies()
+                                                                              .stream()
+                                                                              .filter(failures::containsKey)
+                                                                              .findFirst();
+
+                        Throwable cause = failed.<Throwable>map(dependency -> new IllegalStateException(
+                                "dependency "+dependency.getSimpleName()+" failed",
+                                failures.get(dependency)
+                        )).orElse(null);
+
+                        if(cause == null) {
+                            try {
+                                long initialized = System.nanoTime();
+                                container.init();
+                                long started = System.nanoTime();
+                                container.start();
+                                if(history != null)
+                                    history.record(type, started - initialized, System.nanoTime() - started);
+                            } catch(RuntimeException | LinkageError e) {
+                                cause = e;
+                                LOGGER.log(System.Logger.Level.ERROR, "startup of "+container.getType().getName()+" failed", e);
+                            }
+                        }
+
+                        if(cause != null) {
+                            container.fail(cause);
+                            failures.put(type, cause);
+                        }
+                    }, starter, type -> history == null ? 0 : history.getCost(type, fallback), startupParallelism);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                visited.join();
+            }
+            updateBindings();
+            saveTimingHistory();
+
+            List<Class<? extends IService>> started = new ArrayList<>();
+            Map<Class<? extends IService>, Throwable> failed = new LinkedHashMap<>();
+            for(Class<? extends IService> type : order) {
+                Throwable cause = failures.get(type);
+                if(cause != null) {
+                    failed.put(type, cause);
+                } else {
+                    started.add(type);
+                }
+            }
+
+            warmup(null);
+            return new StartupResult(started, failed, Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            transitions.unlock();
+        }
+    }
+
+    /**
+     * Warm up started services in parallel, dependencies before their dependents
+     * @param progress progress of services started in the background, or null
+     */
+    private void warmup(StartupProgress progress) {
+        ExecutorService warmer = Executors.newVirtualThreadPerTaskExecutor();
+        Duration timeout = warmupTimeout;
+        //Deferred services warm up right after their own start
+        Predicate<ServiceContainer<?>> warming = container -> progress == null || !progress.isDeferred(container.getServiceType());
+        dag.visitReverseAsync(node -> {
+            ServiceContainer<? extends IService> container = containers.get(node.getObject());
+            if(container == null || !warming.test(container))
+                return;
+
+            try {
+                container.warmup();
+            } catch(RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "warmup of "+container.getType().getName()+" failed", e);
+            }
+        }, warmer).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((v, e) -> {
+            warmer.shutdown();
+            if(e instanceof TimeoutException)
+                containers.values()
+                          .stream()
+                          .filter(container -> container.getState() == ServiceState.START)
+                          .filter(warming)
+                          .forEach(container -> LOGGER.log(System.Logger.Level.WARNING, "warmup of "+container.getType().getName()+" exceeded "+timeout));
+
+            //Loader is only ready once deferred tiers are up as well
+            CompletableFuture<?> deferred = progress == null ? CompletableFuture.completedFuture(null) : progress.getCompletion();
+            deferred.whenComplete((result, failure) -> {
+                state.compareAndSet(ServiceState.START, ServiceState.READY);
+                if(e == null) {
+                    //Services registered while warming up missed the visit
+                    containers.values()
+                              .stream()
+                              .filter(container -> container.getState() == ServiceState.START)
+                              .filter(warming)
+                              .forEach(ServiceContainer::warmup);
+                }
+
+                ready.complete(null);
+            });
         });
     }
 
+    /**
+     * Set history to record init and start durations in after every startup, and to schedule parallel startup by
+     * @param history timing history, or null to stop recording
+     */
+    public void setTimingHistory(TimingHistory history) {
+        this.timingHistory = history;
+    }
+
+    /**
+     * Get history durations are recorded in
+     * @return timing history, or null if none is set
+     */
+    public TimingHistory getTimingHistory() {
+        return timingHistory;
+    }
+
+    /**
+     * Set maximum amount of services initialized and started at the same time by parallel startup
+     * @param parallelism amount of services, unbounded by default
+     */
+    public void setStartupParallelism(int parallelism) {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+
+        this.startupParallelism = parallelism;
+    }
+
+    /**
+     * Save timing history, a history that can't be written only costs the next boot its ordering
+     */
+    private void saveTimingHistory() {
+        TimingHistory history = timingHistory;
+        if(history == null)
+            return;
+
+        try {
+            history.save();
+        } catch(IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "unable to save timing history to "+history.getPath(), e);
+        }
+    }
+
+    /**
+     * Set deadline for warming up services after start
+     * @param timeout maximum duration of warmup phase
+     */
+    public void setWarmupTimeout(Duration timeout) {
+        this.warmupTimeout = timeout;
+    }
+
+    /**
+     * Set maximum time stop waits for running async calls before stopping services regardless
+     * @param timeout maximum duration of draining async calls
+     */
+    public void setDrainTimeout(Duration timeout) {
+        this.drainTimeout = timeout;
+    }
+
+    /**
+     * Check if services started and finished warming up
+     * @return is ready
+     */
+    public boolean isReady() {
+        return state.get() == ServiceState.READY;
+    }
+
+    /**
+     * Wait until services started and finished warming up
+     * @return is ready, false if loader stopped first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitReady() throws InterruptedException {
+        try {
+            ready.get();
+        } catch(ExecutionException e) {
+            return false;
+        }
+
+        return isReady();
+    }
+
+    /**
+     * Wait until services started and finished warming up
+     * @param timeout maximum time to wait
+     * @return is ready, false if timed out or loader stopped first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        try {
+            ready.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch(ExecutionException | TimeoutException e) {
+            return false;
+        }
+
+        return isReady();
+    }
+
     /**
      * Stop services
      */
     public void stop() {
-        if(!state.compareAndSet(ServiceState.START, ServiceState.STOP))
-            return;
+        transitions.lock();
+        try {
+            List<Class<? extends IService>> order;
+            lock.writeLock().lock();
+            try {
+                if(!state.compareAndSet(ServiceState.START, ServiceState.STOP) && !state.compareAndSet(ServiceState.READY, ServiceState.STOP))
+                    return;
 
-        dag.visit(node -> {
-            ServiceContainer<? extends IService> container = containers.get(node.getObject());
-            container.stop();
-        });
+                order = getOrder();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            //Services stop even when async calls are still hanging
+            drainAsync(drainTimeout);
+            for(int i = order.size() - 1; i >= 0; i--)
+                containers.get(order.get(i)).stop();
+
+            release();
+        } finally {
+            transitions.unlock();
+        }
+    }
+
+    /**
+     * Stop services in parallel, dependents before their dependencies
+     * @param timeout maximum duration per service, after which its dependencies stop regardless
+     * @param deadline maximum duration of the whole shutdown
+     * @return true if every service stopped within its timeout and the deadline
+     */
+    public boolean stop(Duration timeout, Duration deadline) {
+        transitions.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                if(!state.compareAndSet(ServiceState.START, ServiceState.STOP) && !state.compareAndSet(ServiceState.READY, ServiceState.STOP))
+                    return false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            //Draining counts against the deadline of the whole shutdown
+            long end = System.nanoTime() + deadline.toNanos();
+            AtomicBoolean clean = new AtomicBoolean(drainAsync(timeout.compareTo(deadline) < 0 ? timeout : deadline));
+            ExecutorService stopper = Executors.newVirtualThreadPerTaskExecutor();
+            CompletableFuture<Void> future = dag.visitAsync(node -> {
+                //Registrations completing after the state changed were never brought up
+                ServiceContainer<? extends IService> container = containers.get(node.getObject());
+                if(container == null)
+                    return;
+
+                try {
+                    CompletableFuture.runAsync(container::stop, stopper).get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                } catch(TimeoutException e) {
+                    clean.set(false);
+                    LOGGER.log(System.Logger.Level.WARNING, "stop of "+container.getType().getName()+" exceeded "+timeout);
+                } catch(ExecutionException e) {
+                    clean.set(false);
+                    LOGGER.log(System.Logger.Level.ERROR, "stop of "+container.getType().getName()+" failed", e.getCause());
+                } catch(InterruptedException e) {
+                    clean.set(false);
+                    Thread.currentThread().interrupt();
+                }
+            }, stopper);
+
+            try {
+                future.get(Math.max(0, end - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch(TimeoutException e) {
+                clean.set(false);
+                containers.values()
+                          .stream()
+                          .filter(container -> container.getState() != ServiceState.STOP)
+                          .forEach(container -> LOGGER.log(System.Logger.Level.WARNING, "stop of "+container.getType().getName()+" exceeded deadline of "+deadline));
+            } catch(ExecutionException e) {
+                clean.set(false);
+            } catch(InterruptedException e) {
+                clean.set(false);
+                Thread.currentThread().interrupt();
+            }
+
+            stopper.shutdown();
+            release();
+            return clean.get();
+        } finally {
+            transitions.unlock();
+        }
+    }
+
+    /**
+     * Reject new async calls and wait for running ones to finish
+     * @param timeout maximum time to wait
+     * @return true if all async calls finished
+     */
+    private boolean drainAsync(Duration timeout) {
+        executor.shutdown();
+        try {
+            if(executor.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS))
+                return true;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        LOGGER.log(System.Logger.Level.WARNING, "async calls still running after "+timeout);
+        return false;
+    }
+
+    /**
+     * Release loader resources after services stopped
+     */
+    private void release() {
+        boundTypes.clear();
+        invalidateBindings();
+        executor.shutdown();
+        eventBus.close();
+        scheduler.close();
+        lifecycleDispatcher.close();
+        ready.complete(null);
+
+        Thread hook = shutdownHook.getAndSet(null);
+        if(hook != null && hook != Thread.currentThread()) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch(IllegalStateException ignored) {
+                //JVM is already shutting down
+            }
+        }
+    }
+
+    /**
+     * Stop services in parallel when the JVM shuts down
+     * @param timeout maximum duration per service
+     * @param deadline maximum duration of the whole shutdown
+     */
+    public void registerShutdownHook(Duration timeout, Duration deadline) {
+        Thread hook = new Thread(() -> stop(timeout, deadline), "serviceloader-shutdown");
+        if(shutdownHook.compareAndSet(null, hook))
+            Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * Unregister services, stopping and removing them together with every service depending on them
+     * @param types array of service types
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final void unregister(Class<? extends IService>... types) {
+        transitions.lock();
+        lock.writeLock().lock();
+        try {
+            List<Class<? extends IService>> removed = dag.getAncestors(List.of(types));
+
+            //Stop dependents before their dependencies
+            for(int i = removed.size() - 1; i >= 0; i--)
+                Optional.ofNullable(containers.get(removed.get(i))).ifPresent(ServiceContainer::stop);
+
+            //Drop every reference to the removed types, including types bound from their class loaders
+            StartupProgress progress = startupProgress.get();
+            Set<ClassLoader> loaders = new HashSet<>();
+            removed.forEach(type -> {
+                containers.remove(type);
+                metrics.remove(type);
+                dag.removeNode(type);
+                if(progress != null)
+                    progress.remove(type);
+
+                if(type.getClassLoader() != ServiceLoader.class.getClassLoader())
+                    loaders.add(type.getClassLoader());
+            });
+            boundTypes.removeIf(type -> loaders.contains(type.getClassLoader()));
+            if(state.get().hasInit())
+                dag.update();
+
+            updateBindings();
+        } finally {
+            lock.writeLock().unlock();
+            transitions.unlock();
+        }
+    }
+
+    /**
+     * Restart service and every service depending on it, leaving the rest of the graph running
+     * @param type service type
+     */
+    public void restart(Class<? extends IService> type) {
+        rebuild(type, null);
+    }
+
+    /**
+     * Replace implementation of service, restarting it and every service depending on it
+     * @param type service type
+     * @param implementation new implementation type
+     * @param <T> extends IService
+     */
+    public <T extends IService> void replace(Class<T> type, Class<? extends T> implementation) {
+        rebuild(type, implementation);
+    }
+
+    /**
+     * Stop, recreate and restart service and its transitive dependents. Replacements are built, validated and
+     * initialized next to the running subgraph and swapped in before it stops, a replacement failing to start
+     * is swapped back out for fresh containers of the previous implementations.
+     * @param type service type
+     * @param implementation new implementation type, or null to keep the current one
+     */
+    private void rebuild(Class<? extends IService> type, Class<? extends IService> implementation) {
+        transitions.lock();
+        lock.writeLock().lock();
+        try {
+            if(!containers.containsKey(type))
+                throw new IllegalStateException("unknown service "+type.getSimpleName());
+
+            ServiceState current = state.get();
+            List<Class<? extends IService>> affected = dag.getAncestors(type);
+            Map<Class<? extends IService>, ServiceContainer<? extends IService>> previous = new LinkedHashMap<>();
+            affected.forEach(service -> previous.put(service, containers.get(service)));
+
+            //Nothing running is touched until every replacement exists and the new edges are acyclic
+            Map<Class<? extends IService>, ServiceContainer<? extends IService>> created = recreate(previous);
+            if(implementation != null) {
+                created.put(type, new ServiceContainer<>(ReflectionType.of(implementation), type, this));
+                dag.validate(Map.of(type, created.get(type).getDependencies()));
+            }
+
+            if(current.hasInit())
+                initStaged(created);
+
+            swap(type, created);
+
+            //Stop dependents before their dependencies, callers already resolve the replacements
+            for(int i = affected.size() - 1; i >= 0; i--)
+                previous.get(affected.get(i)).stop();
+
+            try {
+                bringUp(affected, created, current);
+            } catch(RuntimeException | LinkageError e) {
+                for(int i = affected.size() - 1; i >= 0; i--)
+                    created.get(affected.get(i)).stop();
+
+                try {
+                    Map<Class<? extends IService>, ServiceContainer<? extends IService>> restored = recreate(previous);
+                    if(current.hasInit())
+                        initStaged(restored);
+
+                    swap(type, restored);
+                    bringUp(affected, restored, current);
+                } catch(RuntimeException | LinkageError restore) {
+                    e.addSuppressed(restore);
+                }
+
+                throw e;
+            } finally {
+                updateBindings();
+            }
+        } finally {
+            lock.writeLock().unlock();
+            transitions.unlock();
+        }
+    }
+
+    /**
+     * Initialize containers not yet in the graph, resolving their dependencies among each other first
+     * @param staged map of service type to container, dependencies first
+     */
+    private void initStaged(Map<Class<? extends IService>, ServiceContainer<? extends IService>> staged) {
+        this.staged.set(staged);
+        try {
+            staged.values().forEach(ServiceContainer::init);
+        } catch(RuntimeException | LinkageError e) {
+            staged.values().forEach(ServiceContainer::stop);
+            throw e;
+        } finally {
+            this.staged.remove();
+        }
+    }
+
+    /**
+     * Put containers in the graph, moving the edges of service to the dependencies of its new container
+     * @param type service type
+     * @param swapped map of service type to container
+     */
+    private void swap(Class<? extends IService> type, Map<Class<? extends IService>, ServiceContainer<? extends IService>> swapped) {
+        containers.putAll(swapped);
+        dag.removeChildren(type);
+        swapped.get(type).getDependencies().forEach(dependency -> dag.addEdge(type, dependency));
+        dag.update();
+        invalidateBindings();
+    }
+
+    /**
+     * Start and warm up swapped in containers to match the state of the loader
+     * @param affected service types, dependencies first
+     * @param swapped map of service type to container
+     * @param current state of the loader
+     */
+    private void bringUp(List<Class<? extends IService>> affected, Map<Class<? extends IService>, ServiceContainer<? extends IService>> swapped, ServiceState current) {
+        if(current.hasStart())
+            affected.forEach(service -> swapped.get(service).start());
+
+        if(current == ServiceState.READY)
+            affected.forEach(service -> swapped.get(service).warmup());
+    }
+
+    /**
+     * Drop cached bindings, lists still being collected from the previous graph land in the discarded map
+     */
+    private void invalidateBindings() {
+        bindings.set(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Precompute bindings of every type resolved or injected so far in one pass over the graph,
+     * then inject them into initialized services
+     */
+    private void updateBindings() {
+        bindingUpdates.lock();
+        try {
+            Map<Class<?>, List<?>> previous = bindings.get();
+            Set<Class<?>> types = new HashSet<>(boundTypes);
+            containers.values().forEach(container -> types.addAll(container.getBindingTypes()));
+            if(types.isEmpty())
+                return;
+
+            Map<Class<?>, List<Object>> collected = new HashMap<>();
+            types.forEach(type -> collected.put(type, new ArrayList<>()));
+            dag.visitReverse(node -> Optional.ofNullable(containers.get(node.getObject()))
+                                             .map(ServiceContainer::getService)
+                                             .ifPresent(service -> collected.forEach((type, list) -> {
+                                                 if(type.isInstance(service))
+                                                     list.add(service);
+                                             })));
+
+            Map<Class<?>, List<?>> map = new ConcurrentHashMap<>();
+            collected.forEach((type, list) -> map.put(type, List.of(list.toArray())));
+            //Registrations invalidating meanwhile update again after, so a stale map must not replace theirs
+            bindings.compareAndSet(previous, map);
+            containers.values().forEach(ServiceContainer::refreshBindings);
+        } finally {
+            bindingUpdates.unlock();
+        }
+    }
+
+    private <T extends IService> ServiceContainer<T> recreate(ServiceContainer<T> container) {
+        return new ServiceContainer<>(container.getType(), container.getServiceType(), this);
+    }
+
+    private Map<Class<? extends IService>, ServiceContainer<? extends IService>> recreate(Map<Class<? extends IService>, ServiceContainer<? extends IService>> containers) {
+        Map<Class<? extends IService>, ServiceContainer<? extends IService>> map = new LinkedHashMap<>();
+        containers.forEach((service, container) -> map.put(service, recreate(container)));
+        return map;
+    }
+
+    /**
+     * Get container of service, containers being initialized by this thread before a swap come first
+     * @param type service type
+     * @return container, or null if service is not registered
+     */
+    private ServiceContainer<? extends IService> getContainer(Class<?> type) {
+        Map<Class<? extends IService>, ServiceContainer<? extends IService>> current = staged.get();
+        if(current != null && current.containsKey(type))
+            return current.get(type);
+
+        return containers.get(type);
     }
 
     /**
@@ -110,9 +1313,56 @@ public class ServiceLoader {
      * @param <T> extends IService
      */
     public <T extends IService> T resolve(Class<T> type) {
-        return Optional.ofNullable(containers.get(type))
-                       .map(container -> type.cast(container.getInstance()))
+        return Optional.ofNullable(getContainer(type))
+                       .map(container -> type.cast(container.getService()))
                        .orElse(null);
     }
 
+    /**
+     * Resolve every instance of sharded service, for combining them into an aggregate view
+     * @param type service type
+     * @return shards, or null if service is not sharded or not initialized
+     * @param <T> extends IService
+     */
+    public <T extends IService> Shards<? extends T> resolveShards(Class<T> type) {
+        ServiceContainer<? extends IService> container = getContainer(type);
+        if(container == null)
+            return null;
+
+        //Registered under type, so its shards are instances of it
+        @SuppressWarnings("unchecked")
+        Shards<? extends T> shards = (Shards<? extends T>) container.getShards();
+        return shards;
+    }
+
+    /**
+     * Resolve all services assignable to type, in dependency order among each other,
+     * bindings add no dependencies so services bound are not guaranteed to be initialized or started before the caller
+     * @param type service or interface type
+     * @return immutable list of service instances, precomputed again whenever registrations change
+     * @param <T> type
+     */
+    public <T> List<T> resolveAll(Class<T> type) {
+        //Bindings of type only hold instances of it
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) bindings.get().computeIfAbsent(type, this::collect);
+        return list;
+    }
+
+    /**
+     * Collect instances assignable to type the first time it is resolved, after which it is precomputed
+     * @param type service or interface type
+     * @return immutable list of service instances
+     */
+    private List<?> collect(Class<?> type) {
+        boundTypes.add(type);
+        List<Object> list = new ArrayList<>();
+        dag.visitReverse(node -> Optional.ofNullable(containers.get(node.getObject()))
+                                         .map(ServiceContainer::getService)
+                                         .filter(type::isInstance)
+                                         .ifPresent(list::add));
+
+        return List.of(list.toArray());
+    }
+
 }
@@ -0,0 +1,18 @@
+package nl.iobyte.serviceloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Async {
+
+    /**
+     * Maximum amount of calls running at the same time, shared by all methods of the service when set on its type
+     * @return concurrency limit, or 0 for unlimited
+     */
+    int concurrency() default 0;
+
+}
@@ -0,0 +1,37 @@
+package nl.iobyte.serviceloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batched {
+
+    /**
+     * Name of bulk method taking a list of keys and returning a map or list of values
+     * @return method name
+     */
+    String bulk();
+
+    /**
+     * Maximum amount of keys per bulk call, a full batch is sent without waiting for the window
+     * @return maximum batch size
+     */
+    int maxSize() default 100;
+
+    /**
+     * Time to collect calls after the first call of a batch
+     * @return time in unit
+     */
+    long window() default 10;
+
+    /**
+     * Unit of window
+     * @return time unit
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+}
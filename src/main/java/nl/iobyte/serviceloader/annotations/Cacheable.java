@@ -0,0 +1,31 @@
+package nl.iobyte.serviceloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+
+    /**
+     * Maximum amount of cached results
+     * @return maximum size
+     */
+    long maximumSize() default 10_000;
+
+    /**
+     * Time after which a cached result expires
+     * @return time in unit, or 0 to never expire
+     */
+    long expireAfterWrite() default 0;
+
+    /**
+     * Unit of expire after write
+     * @return time unit
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+}
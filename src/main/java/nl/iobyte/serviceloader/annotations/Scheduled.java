@@ -0,0 +1,43 @@
+package nl.iobyte.serviceloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Scheduled {
+
+    /**
+     * Period between the start of runs
+     * @return period, or -1 if unused
+     */
+    long rate() default -1;
+
+    /**
+     * Delay between the end of a run and the start of the next
+     * @return delay, or -1 if unused
+     */
+    long delay() default -1;
+
+    /**
+     * Delay before the first run of a rate or delay schedule
+     * @return initial delay
+     */
+    long initialDelay() default 0;
+
+    /**
+     * Unit of rate, delay and initial delay
+     * @return time unit
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * Cron expression with optional seconds field, "sec min hour day month weekday"
+     * @return expression, or empty if unused
+     */
+    String cron() default "";
+
+}
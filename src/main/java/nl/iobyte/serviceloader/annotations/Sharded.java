@@ -0,0 +1,18 @@
+package nl.iobyte.serviceloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Sharded {
+
+    /**
+     * Amount of instances to create
+     * @return amount of shards, or 0 for one per available processor
+     */
+    int value() default 0;
+
+}
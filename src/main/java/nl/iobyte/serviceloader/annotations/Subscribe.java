@@ -0,0 +1,18 @@
+package nl.iobyte.serviceloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Subscribe {
+
+    /**
+     * Deliver events on a virtual thread instead of the publishing thread
+     * @return is async
+     */
+    boolean async() default false;
+
+}
@@ -0,0 +1,19 @@
+package nl.iobyte.serviceloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Tier {
+
+    /**
+     * Startup tier of service, tier 0 is started before the loader returns from start,
+     * later tiers are started in the background afterwards, lowest first
+     * @return tier, never lower than the tiers of the services it depends on
+     */
+    int value();
+
+}
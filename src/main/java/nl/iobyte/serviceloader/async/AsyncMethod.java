@@ -0,0 +1,116 @@
+package nl.iobyte.serviceloader.async;
+
+import nl.iobyte.serviceloader.interfaces.IMethodHandler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs calls of a method returning a future on an executor, returning a future completing with the result of the call
+ */
+public class AsyncMethod implements IMethodHandler {
+
+    private final Method method;
+    private final MethodHandle handle;
+    private final Executor executor;
+    private final Semaphore limit;
+
+    /**
+     * @param method method returning a future
+     * @param target instance to invoke method on
+     * @param executor executor to run calls on
+     * @param limit permits bounding concurrent calls, or null for unlimited
+     */
+    public AsyncMethod(Method method, Object target, Executor executor, Semaphore limit) {
+        if(!validate(method))
+            throw new IllegalStateException("async method "+method.getName()+" must return CompletableFuture");
+
+        try {
+            this.handle = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                                       .unreflect(method)
+                                       .bindTo(target)
+                                       .asSpreader(Object[].class, method.getParameterCount());
+        } catch(IllegalAccessException e) {
+            throw new IllegalStateException("async method "+method.getName()+" is not accessible", e);
+        }
+
+        this.method = method;
+        this.executor = executor;
+        this.limit = limit;
+    }
+
+    /**
+     * Get async method
+     * @return method
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Check if method can be called asynchronously
+     * @param method method
+     * @return returns a future
+     */
+    public static boolean validate(Method method) {
+        Class<?> type = method.getReturnType();
+        return type == CompletableFuture.class || type == CompletionStage.class;
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(arguments, result));
+        } catch(RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    private void run(Object[] arguments, CompletableFuture<Object> result) {
+        if(limit != null) {
+            try {
+                limit.acquire();
+            } catch(InterruptedException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+        }
+
+        //Hold permit until the returned future completes
+        try {
+            CompletionStage<?> stage = (CompletionStage<?>) handle.invoke(arguments);
+            if(stage == null) {
+                release();
+                result.complete(null);
+                return;
+            }
+
+            stage.whenComplete((value, e) -> {
+                release();
+                if(e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(value);
+                }
+            });
+        } catch(Throwable e) {
+            release();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void release() {
+        if(limit != null)
+            limit.release();
+    }
+
+}
@@ -0,0 +1,201 @@
+package nl.iobyte.serviceloader.batch;
+
+import nl.iobyte.serviceloader.annotations.Batched;
+import nl.iobyte.serviceloader.async.AsyncMethod;
+import nl.iobyte.serviceloader.interfaces.IMethodHandler;
+import nl.iobyte.serviceloader.scheduler.TimingWheel;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Collects single key calls for a short window and answers them with one call of the bulk method
+ */
+public class BatchedMethod implements IMethodHandler {
+
+    private final Method method, bulk;
+    private final MethodHandle handle;
+    private final TimingWheel scheduler;
+    private final Executor executor;
+    private final int maxSize;
+    private final long window;
+    private final Batched annotation;
+
+    //Guarded by this
+    private Batch batch;
+
+    /**
+     * @param method single key method returning a future
+     * @param target instance to invoke bulk method on
+     * @param annotation batched annotation of method
+     * @param scheduler scheduler closing batches after their window
+     * @param executor executor running full batches
+     */
+    public BatchedMethod(Method method, Object target, Batched annotation, TimingWheel scheduler, Executor executor) {
+        this.bulk = validate(method, annotation);
+        try {
+            this.handle = MethodHandles.privateLookupIn(bulk.getDeclaringClass(), MethodHandles.lookup())
+                                       .unreflect(bulk)
+                                       .bindTo(target);
+        } catch(IllegalAccessException e) {
+            throw new IllegalStateException("bulk method "+bulk.getName()+" is not accessible", e);
+        }
+
+        this.method = method;
+        this.annotation = annotation;
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.maxSize = Math.max(1, annotation.maxSize());
+        this.window = annotation.window();
+    }
+
+    /**
+     * Get batched method
+     * @return method
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Get bulk method answering batches
+     * @return method
+     */
+    public Method getBulkMethod() {
+        return bulk;
+    }
+
+    /**
+     * Validate method can be batched through its bulk method
+     * @param method single key method
+     * @param annotation batched annotation of method
+     * @return bulk method
+     */
+    public static Method validate(Method method, Batched annotation) {
+        if(method.getParameterCount() != 1 || !AsyncMethod.validate(method))
+            throw new IllegalStateException("batched method "+method.getName()+" must take one key and return CompletableFuture");
+
+        for(Method bulk : method.getDeclaringClass().getMethods()) {
+            if(!bulk.getName().equals(annotation.bulk()) || bulk.getParameterCount() != 1)
+                continue;
+
+            if(bulk.getParameterTypes()[0].isAssignableFrom(List.class) && (bulk.getReturnType() == Map.class || bulk.getReturnType() == List.class))
+                return bulk;
+        }
+
+        throw new IllegalStateException("batched method "+method.getName()+" has no bulk method "+annotation.bulk()+" taking a list and returning a map or list");
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Batch full = null;
+        synchronized(this) {
+            if(batch == null) {
+                Batch created = new Batch();
+                created.timeout = scheduler.schedule(() -> flush(created), window, annotation.unit());
+
+                //A closed scheduler never sends the batch, so fail like a rejected async call
+                if(created.timeout.isCancelled()) {
+                    future.completeExceptionally(new RejectedExecutionException("batched method "+method.getName()+" called after its loader stopped"));
+                    return future;
+                }
+
+                batch = created;
+            }
+
+            batch.calls.computeIfAbsent(arguments[0], key -> new ArrayList<>()).add(future);
+            if(batch.calls.size() >= maxSize) {
+                full = batch;
+                batch = null;
+                full.timeout.cancel();
+            }
+        }
+
+        if(full != null) {
+            Batch send = full;
+            try {
+                executor.execute(() -> run(send));
+            } catch(RejectedExecutionException e) {
+                fail(send, e);
+            }
+        }
+
+        return future;
+    }
+
+    /**
+     * Send pending batch immediately
+     */
+    public void flush() {
+        Batch current;
+        synchronized(this) {
+            current = batch;
+        }
+
+        if(current != null)
+            flush(current);
+    }
+
+    private void flush(Batch current) {
+        synchronized(this) {
+            if(batch != current)
+                return;
+
+            batch = null;
+        }
+
+        current.timeout.cancel();
+        run(current);
+    }
+
+    private void run(Batch current) {
+        List<Object> keys = new ArrayList<>(current.calls.keySet());
+        Object result;
+        try {
+            result = handle.invoke(keys);
+        } catch(Throwable e) {
+            fail(current, e);
+            return;
+        }
+
+        if(result instanceof Map<?, ?> map) {
+            current.calls.forEach((key, futures) -> futures.forEach(future -> future.complete(map.get(key))));
+            return;
+        }
+
+        List<?> list = (List<?>) result;
+        if(list == null || list.size() != keys.size()) {
+            fail(current, new IllegalStateException("bulk method "+bulk.getName()+" returned "+(list == null ? "null" : list.size()+" values")+" for "+keys.size()+" keys"));
+            return;
+        }
+
+        for(int i = 0; i < keys.size(); i++) {
+            Object value = list.get(i);
+            current.calls.get(keys.get(i)).forEach(future -> future.complete(value));
+        }
+    }
+
+    private static void fail(Batch current, Throwable e) {
+        current.calls.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+    }
+
+    /**
+     * Calls collected within one window, by key
+     */
+    private static class Batch {
+
+        private final Map<Object, List<CompletableFuture<Object>>> calls = new LinkedHashMap<>();
+        private TimingWheel.Timeout timeout;
+
+    }
+
+}
@@ -0,0 +1,340 @@
+package nl.iobyte.serviceloader.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded concurrent cache with W-TinyLFU admission and eviction.
+ * New entries enter a small LRU window, entries leaving it only replace an entry of the main segmented LRU
+ * when a frequency sketch saw them more often. Reads never block, they are recorded in a lossy buffer
+ * replayed against the policy by whichever thread gets the lock.
+ */
+public class BoundedCache<K, V> {
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2, REMOVED = -1;
+    private static final int READ_BUFFER = 128;
+
+    private final Map<K, Entry<K, V>> data = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final long maximumSize, windowSize, protectedSize, expireNanos;
+
+    //Policy, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashSet<Entry<K, V>> window = new LinkedHashSet<>();
+    private final LinkedHashSet<Entry<K, V>> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<Entry<K, V>> protect = new LinkedHashSet<>();
+    private final FrequencySketch sketch;
+
+    private final AtomicReferenceArray<Entry<K, V>> reads = new AtomicReferenceArray<>(READ_BUFFER);
+    private final AtomicInteger readIndex = new AtomicInteger();
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+    /**
+     * @param maximumSize maximum amount of entries
+     * @param expireAfterWrite time after which entries expire, or zero to never expire
+     */
+    public BoundedCache(long maximumSize, Duration expireAfterWrite) {
+        if(maximumSize <= 0)
+            throw new IllegalArgumentException("maximum size must be positive");
+
+        this.maximumSize = maximumSize;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.protectedSize = (maximumSize - windowSize) * 4 / 5;
+        this.expireNanos = expireAfterWrite.toNanos();
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Get cached value, loading it once when absent even if many threads ask for it at the same time
+     * @param key key
+     * @param loader function computing value
+     * @return value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<K, V> entry = getEntry(key);
+        if(entry != null) {
+            hits.increment();
+            return entry.value;
+        }
+
+        misses.increment();
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> pending = loading.putIfAbsent(key, created);
+        if(pending != null)
+            return join(pending);
+
+        try {
+            //Another thread may have finished loading just before
+            entry = getEntry(key);
+            V value = entry != null ? entry.value : loader.apply(key);
+            if(entry == null)
+                put(key, value);
+
+            created.complete(value);
+            return value;
+        } catch(RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, created);
+        }
+    }
+
+    /**
+     * Get cached value
+     * @param key key
+     * @return value, or null if absent
+     */
+    public V getIfPresent(K key) {
+        Entry<K, V> entry = getEntry(key);
+        if(entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Put value in cache
+     * @param key key
+     * @param value value
+     */
+    public void put(K key, V value) {
+        Entry<K, V> entry = new Entry<>(key, value, System.nanoTime());
+        lock.lock();
+        try {
+            drainReads();
+            Entry<K, V> previous = data.put(key, entry);
+            if(previous != null)
+                unlink(previous);
+
+            sketch.increment(key);
+            entry.queue = WINDOW;
+            window.add(entry);
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove cached value
+     * @param key key
+     */
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            Entry<K, V> entry = data.remove(key);
+            if(entry != null)
+                unlink(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all cached values
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            data.clear();
+            for(int i = 0; i < READ_BUFFER; i++)
+                reads.set(i, null);
+
+            window.clear();
+            probation.clear();
+            protect.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get amount of cached values
+     * @return size
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Get amount of lookups finding a cached value
+     * @return hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get amount of lookups not finding a cached value
+     * @return misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get amount of values evicted to stay within maximum size
+     * @return evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get ratio of lookups finding a cached value
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hit = hits.sum(), total = hit + misses.sum();
+        return total == 0 ? 1 : (double) hit / total;
+    }
+
+    private Entry<K, V> getEntry(K key) {
+        Entry<K, V> entry = data.get(key);
+        if(entry == null)
+            return null;
+
+        if(expireNanos > 0 && System.nanoTime() - entry.written >= expireNanos) {
+            lock.lock();
+            try {
+                if(data.remove(key, entry))
+                    unlink(entry);
+            } finally {
+                lock.unlock();
+            }
+
+            return null;
+        }
+
+        //Lossy, a slot overwritten before it is drained only costs an access update
+        int index = readIndex.getAndIncrement() & (READ_BUFFER - 1);
+        reads.lazySet(index, entry);
+        if((index & 31) == 31 && lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return entry;
+    }
+
+    private void drainReads() {
+        for(int i = 0; i < READ_BUFFER; i++) {
+            Entry<K, V> entry = reads.getAndSet(i, null);
+            if(entry != null)
+                onAccess(entry);
+        }
+    }
+
+    private void onAccess(Entry<K, V> entry) {
+        if(entry.queue == REMOVED)
+            return;
+
+        sketch.increment(entry.key);
+        if(entry.queue == WINDOW) {
+            window.addLast(entry);
+        } else if(entry.queue == PROTECTED) {
+            protect.addLast(entry);
+        } else {
+            //Promote to protected, demoting its least recently used entries
+            probation.remove(entry);
+            entry.queue = PROTECTED;
+            protect.addLast(entry);
+            while(protect.size() > protectedSize) {
+                Entry<K, V> demoted = protect.removeFirst();
+                demoted.queue = PROBATION;
+                probation.addLast(demoted);
+            }
+        }
+    }
+
+    private void evict() {
+        while(window.size() > windowSize) {
+            Entry<K, V> candidate = window.removeFirst();
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+
+        //Most recent admission competes with least recently used entry of main segment
+        while(window.size() + probation.size() + protect.size() > maximumSize) {
+            Entry<K, V> victim = probation.isEmpty() ? protect.getFirst() : probation.getFirst();
+            Entry<K, V> candidate = probation.isEmpty() ? victim : probation.getLast();
+            if(candidate != victim && sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                remove(victim);
+            } else {
+                remove(candidate);
+            }
+        }
+    }
+
+    private void remove(Entry<K, V> entry) {
+        data.remove(entry.key, entry);
+        unlink(entry);
+        evictions.increment();
+    }
+
+    private void unlink(Entry<K, V> entry) {
+        switch(entry.queue) {
+            case WINDOW -> window.remove(entry);
+            case PROBATION -> probation.remove(entry);
+            case PROTECTED -> protect.remove(entry);
+        }
+
+        entry.queue = REMOVED;
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause)
+                throw cause;
+
+            if(e.getCause() instanceof Error cause)
+                throw cause;
+
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCache{" +
+                "size=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    private static class Entry<K, V> {
+
+        private final K key;
+        private final V value;
+        private final long written;
+        private int queue = REMOVED;
+
+        private Entry(K key, V value, long written) {
+            this.key = key;
+            this.value = value;
+            this.written = written;
+        }
+
+    }
+
+}
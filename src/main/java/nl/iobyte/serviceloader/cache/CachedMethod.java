@@ -0,0 +1,116 @@
+package nl.iobyte.serviceloader.cache;
+
+import nl.iobyte.serviceloader.annotations.Cacheable;
+import nl.iobyte.serviceloader.interfaces.IMethodHandler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Results of a cacheable method on a single instance, keyed by its arguments
+ */
+public class CachedMethod implements IMethodHandler {
+
+    private final Method method;
+    private final MethodHandle handle;
+    private final BoundedCache<Key, Object> cache;
+
+    public CachedMethod(Method method, Object target, Cacheable annotation) {
+        if(method.getReturnType() == void.class)
+            throw new IllegalStateException("cacheable method "+method.getName()+" can't return void");
+
+        try {
+            this.handle = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                                       .unreflect(method)
+                                       .bindTo(target)
+                                       .asSpreader(Object[].class, method.getParameterCount());
+        } catch(IllegalAccessException e) {
+            throw new IllegalStateException("cacheable method "+method.getName()+" is not accessible", e);
+        }
+
+        this.method = method;
+        this.cache = new BoundedCache<>(
+                annotation.maximumSize(),
+                Duration.ofNanos(annotation.unit().toNanos(annotation.expireAfterWrite()))
+        );
+    }
+
+    /**
+     * Get cached method
+     * @return method
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Get cache holding results, for reading its counters
+     * @return cache
+     */
+    public BoundedCache<?, ?> getCache() {
+        return cache;
+    }
+
+    /**
+     * Get cached result for arguments, invoking method when absent
+     * @param arguments array of arguments
+     * @return result
+     * @throws Throwable exception thrown by method
+     */
+    @Override
+    public Object invoke(Object[] arguments) throws Throwable {
+        try {
+            return cache.get(new Key(arguments), key -> {
+                try {
+                    return handle.invoke(key.arguments);
+                } catch(Throwable e) {
+                    throw new Failure(e);
+                }
+            });
+        } catch(Failure e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Arguments compared by content
+     */
+    private static class Key {
+
+        private final Object[] arguments;
+        private final int hash;
+
+        private Key(Object[] arguments) {
+            this.arguments = arguments;
+            this.hash = Arrays.deepHashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && Arrays.deepEquals(arguments, key.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    /**
+     * Carries exception of method through the cache
+     */
+    private static class Failure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private Failure(Throwable cause) {
+            super(cause.getMessage(), cause, false, false);
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package nl.iobyte.serviceloader.cache;
+
+/**
+ * Count-min sketch of 4 bit counters estimating how often keys were seen, halved periodically so old popularity fades
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x97cb3127, 0xe2a3a6f1, 0x8fb0c2f5, 0xb7bb2c17};
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int samples;
+
+    FrequencySketch(long maximumSize) {
+        int width = Integer.highestOneBit((int) Math.min(1 << 22, Math.max(16, maximumSize)) * 2 - 1);
+        this.table = new byte[DEPTH * width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Get estimated frequency of key
+     * @param key key
+     * @return frequency between 0 and 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for(int i = 0; i < DEPTH; i++)
+            frequency = Math.min(frequency, table[index(hash, i)]);
+
+        return frequency;
+    }
+
+    /**
+     * Increment estimated frequency of key
+     * @param key key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for(int i = 0; i < DEPTH; i++) {
+            int index = index(hash, i);
+            if(table[index] < 15) {
+                table[index]++;
+                added = true;
+            }
+        }
+
+        if(added && ++samples >= sampleSize)
+            reset();
+    }
+
+    private void reset() {
+        for(int i = 0; i < table.length; i++)
+            table[i] >>>= 1;
+
+        samples /= 2;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9E3779B1;
+        return row * (mask + 1) + ((h ^ (h >>> 16)) & mask);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+
+}
@@ -1,9 +1,16 @@
 package nl.iobyte.serviceloader.dag;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 /**
+ * Writes are serialized on the graph, reads go through an immutable snapshot rebuilt after each change
+ *
  * @author KocproZ
  * Created 2018-08-14 at 10:35
  * <a href="https://github.com/KocproZ/DAG"></a>
@@ -11,37 +18,215 @@ import java.util.function.Consumer;
 public class DAG<T> {
 
     private final Map<T, Node<T>> nodes;
-    private final List<Node<T>> roots;
+    private volatile Snapshot<T> snapshot;
+    private long version;
 
     public DAG() {
         nodes = new LinkedHashMap<>();
-        roots = new ArrayList<>();
     }
 
     /**
-     * Performs Depth-first search from roots and executes lambda on every node
+     * Executes lambda on every node, parents before their children
      *
      * @param consumer lambda to be executed on nodes
      */
     public void visit(Consumer<Node<T>> consumer) {
-        Set<Node<T>> visited = new HashSet<>();
-        for (Node<T> node : roots) {
-            consumer.accept(node);
-            node.getChildren().forEach(n -> n.visit(consumer, visited));
-        }
+        List<Node<T>> order = snapshot().order;
+        for (int i = order.size() - 1; i >= 0; i--)
+            consumer.accept(order.get(i));
     }
 
     /**
-     * Performs Top-first search from roots and executes lambda on every node
+     * Executes lambda on every node, children before their parents
      *
      * @param consumer lambda to be executed on nodes
      */
     public void visitReverse(Consumer<Node<T>> consumer) {
-        Set<Node<T>> visited = new HashSet<>();
-        for (Node<T> node : roots) {
-            node.getChildren().forEach(n -> n.visitReverse(consumer, visited));
-            consumer.accept(node);
+        snapshot().order.forEach(consumer);
+    }
+
+    /**
+     * Executes lambda on every node once all its children completed, independent nodes run in parallel
+     *
+     * @param consumer lambda to be executed on nodes
+     * @param executor executor to run lambda on
+     * @return future completing when every node has been visited
+     */
+    public CompletableFuture<Void> visitReverseAsync(Consumer<Node<T>> consumer, Executor executor) {
+        Snapshot<T> current = snapshot();
+        Map<Node<T>, CompletableFuture<Void>> futures = new HashMap<>();
+        for (Node<T> node : current.order) {
+            CompletableFuture<?>[] children = current.children.get(node).stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture[]::new);
+
+            futures.put(node, CompletableFuture.allOf(children)
+                    .handle((v, e) -> null)
+                    .thenRunAsync(() -> consumer.accept(node), executor));
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Executes lambda on every node once all its children completed, running at most parallelism nodes at a time.
+     * Of the nodes that are ready, the one heading the longest remaining path of costs runs first.
+     *
+     * @param consumer lambda to be executed on nodes
+     * @param executor executor to run lambda on
+     * @param cost estimated cost of visiting object
+     * @param parallelism maximum amount of nodes visited at the same time
+     * @return future completing when every node has been visited
+     */
+    public CompletableFuture<Void> visitReverseAsync(Consumer<Node<T>> consumer, Executor executor, ToLongFunction<T> cost, int parallelism) {
+        Snapshot<T> current = snapshot();
+
+        //Parents come after their children, so walk backwards to know every parent's path first
+        Map<Node<T>, Long> remaining = new HashMap<>();
+        for (int i = current.order.size() - 1; i >= 0; i--) {
+            Node<T> node = current.order.get(i);
+            long longest = 0;
+            for (Node<T> parent : current.parents.get(node))
+                longest = Math.max(longest, remaining.get(parent));
+
+            remaining.put(node, longest + Math.max(0, cost.applyAsLong(node.getObject())));
         }
+
+        Schedule<T> schedule = new Schedule<>(current, consumer, executor, remaining, Math.max(1, parallelism));
+        schedule.dispatch();
+        return schedule.done;
+    }
+
+    /**
+     * Executes lambda on every node once all its parents completed, independent nodes run in parallel
+     *
+     * @param consumer lambda to be executed on nodes
+     * @param executor executor to run lambda on
+     * @return future completing when every node has been visited
+     */
+    public CompletableFuture<Void> visitAsync(Consumer<Node<T>> consumer, Executor executor) {
+        Snapshot<T> current = snapshot();
+        Map<Node<T>, CompletableFuture<Void>> futures = new HashMap<>();
+        for (int i = current.order.size() - 1; i >= 0; i--) {
+            Node<T> node = current.order.get(i);
+            CompletableFuture<?>[] parents = current.parents.get(node).stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture[]::new);
+
+            futures.put(node, CompletableFuture.allOf(parents)
+                    .handle((v, e) -> null)
+                    .thenRunAsync(() -> consumer.accept(node), executor));
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Gets object and all objects with a path to it, ordered so every object comes after its children
+     *
+     * @param object to start from
+     * @return list of objects
+     */
+    public List<T> getAncestors(T object) {
+        return getAncestors(Collections.singleton(object));
+    }
+
+    /**
+     * Gets objects and all objects with a path to them, ordered so every object comes after its children
+     *
+     * @param objects to start from
+     * @return list of objects
+     */
+    public List<T> getAncestors(Collection<T> objects) {
+        Snapshot<T> current = snapshot();
+        Set<Node<T>> found = new HashSet<>();
+        Deque<Node<T>> queue = new ArrayDeque<>();
+        for (T object : objects) {
+            Node<T> start = current.nodes.get(object);
+            if (start != null && found.add(start)) queue.add(start);
+        }
+
+        while (!queue.isEmpty()) {
+            for (Node<T> parent : current.parents.get(queue.poll()))
+                if (found.add(parent)) queue.add(parent);
+        }
+
+        List<T> list = new ArrayList<>(found.size());
+        for (Node<T> node : current.order)
+            if (found.contains(node)) list.add(node.getObject());
+
+        return list;
+    }
+
+    /**
+     * Gets objects and all objects they have a path to, ordered so every object comes after its children.
+     * Walks the graph from the given objects instead of taking a snapshot, so it costs the size of the result.
+     *
+     * @param objects to start from
+     * @return list of objects
+     */
+    public synchronized List<T> getDescendants(Collection<T> objects) {
+        Set<Node<T>> found = new HashSet<>();
+        List<T> list = new ArrayList<>();
+        Deque<Node<T>> path = new ArrayDeque<>();
+        Deque<Iterator<Node<T>>> stack = new ArrayDeque<>();
+        for (T object : objects) {
+            Node<T> start = nodes.get(object);
+            if (start == null || !found.add(start)) continue;
+
+            path.push(start);
+            stack.push(start.getChildren().iterator());
+            while (!stack.isEmpty()) {
+                Iterator<Node<T>> iterator = stack.peek();
+                if (!iterator.hasNext()) {
+                    stack.pop();
+                    list.add(path.pop().getObject());
+                    continue;
+                }
+
+                Node<T> child = iterator.next();
+                if (found.add(child)) {
+                    path.push(child);
+                    stack.push(child.getChildren().iterator());
+                }
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Removes node and all its edges
+     *
+     * @param object of node
+     */
+    public synchronized void removeNode(T object) {
+        Node<T> node = nodes.remove(object);
+        if (node == null) return;
+
+        for (Node<T> child : node.getChildren())
+            child.getParents().remove(node);
+
+        for (Node<T> parent : node.getParents())
+            parent.getChildren().remove(node);
+
+        changed();
+    }
+
+    /**
+     * Removes all edges from node to its children
+     *
+     * @param object of node
+     */
+    public synchronized void removeChildren(T object) {
+        Node<T> node = nodes.get(object);
+        if (node == null) return;
+
+        for (Node<T> child : node.getChildren())
+            child.getParents().remove(node);
+
+        node.getChildren().clear();
+        changed();
     }
 
     /**
@@ -50,72 +235,163 @@ public class DAG<T> {
      * @param object to create node with
      * @return Node with given object
      */
-    public Node<T> createNode(T object) {
+    public synchronized Node<T> createNode(T object) {
         Node<T> node = new Node<>(object);
         nodes.put(object, node);
+        changed();
         return node;
     }
 
     /**
-     * Finds root nodes and checks for cycles
+     * Gets node for given object, creating it when absent
+     *
+     * @param object to get node for
+     * @return Node with given object
+     */
+    public synchronized Node<T> addNode(T object) {
+        Node<T> node = nodes.get(object);
+        if (node == null) node = createNode(object);
+        return node;
+    }
+
+    /**
+     * Checks for cycles
      * @throws CycleFoundException if cycle is found
      */
     public void update() throws CycleFoundException {
-        roots.clear();
-        findRoots();
-        checkForCycles();
+        Snapshot<T> current = snapshot();
+        if (current.cycle != null)
+            throw new CycleFoundException(getPath(current.cycle));
     }
 
-    private void findRoots() {
-        for (Node<T> n : nodes.values()) {
-            if (n.getParents().size() == 0)
-                roots.add(n);
+    /**
+     * Adds nodes with edges to their children in one step
+     *
+     * @param edges map of parent to its children
+     * @param validate check for cycles first, leaving the graph unchanged if one would be found
+     * @throws CycleFoundException if validating and cycle would be found
+     */
+    public synchronized void addEdges(Map<T, ? extends Collection<T>> edges, boolean validate) throws CycleFoundException {
+        if (validate) {
+            Map<T, List<T>> merged = new HashMap<>();
+            edges.forEach((parent, children) -> {
+                List<T> list = new ArrayList<>(getChildren(parent, Collections.emptyMap()));
+                list.addAll(children);
+                merged.put(parent, list);
+            });
+            validate(merged);
         }
+
+        edges.forEach((parent, children) -> {
+            addNode(parent);
+            for (T child : children)
+                addEdge(parent, child);
+        });
     }
 
     /**
-     * Checks if graph contains cycles
+     * Checks for cycles the graph would have with the children of given objects replaced, without changing it
      *
-     * @throws CycleFoundException if cycle is found
+     * @param children map of object to its new children
+     * @throws CycleFoundException if cycle would be found
      */
-    private void checkForCycles() throws CycleFoundException {
-        if (roots.isEmpty() && nodes.size() > 1)
-            throw new CycleFoundException("No childless node found to be selected as root");
-        List<Node<T>> cycleCrawlerPath = new ArrayList<>();
-        for (Node<T> n : roots) {
-            checkForCycles(n, cycleCrawlerPath);
+    public synchronized void validate(Map<T, ? extends Collection<T>> children) throws CycleFoundException {
+        //Objects on the current path map to false, finished objects to true
+        Map<T, Boolean> visited = new HashMap<>();
+        List<T> path = new ArrayList<>();
+        Deque<Iterator<T>> stack = new ArrayDeque<>();
+        for (T start : children.keySet()) {
+            if (visited.containsKey(start)) continue;
+
+            visited.put(start, false);
+            path.add(start);
+            stack.push(getChildren(start, children).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<T> iterator = stack.peek();
+                if (!iterator.hasNext()) {
+                    stack.pop();
+                    visited.put(path.remove(path.size() - 1), true);
+                    continue;
+                }
+
+                T child = iterator.next();
+                Boolean finished = visited.get(child);
+                if (finished == null) {
+                    visited.put(child, false);
+                    path.add(child);
+                    stack.push(getChildren(child, children).iterator());
+                } else if (!finished) {
+                    List<T> cycle = new ArrayList<>(path.subList(path.indexOf(child), path.size()));
+                    cycle.add(child);
+                    throw new CycleFoundException(cycle.stream().map(Object::toString).collect(Collectors.joining("->")));
+                }
+            }
         }
     }
 
-    private void checkForCycles(Node<T> n, List<Node<T>> path) {
-        if (path.contains(n)) {
-            path.add(n);
-            throw new CycleFoundException(getPath(path.subList(path.indexOf(n), path.size())));
-        }
+    private Collection<T> getChildren(T object, Map<T, ? extends Collection<T>> replaced) {
+        Collection<T> children = replaced.get(object);
+        if (children != null) return children;
+
+        Node<T> node = nodes.get(object);
+        if (node == null) return Collections.emptyList();
+
+        List<T> list = new ArrayList<>(node.getChildren().size());
+        for (Node<T> child : node.getChildren())
+            list.add(child.getObject());
 
-        path.add(n);
-        n.getParents().forEach(node -> checkForCycles(node, path));
-        path.remove(path.size() - 1);
+        return list;
     }
 
     /**
      * @param parent Parent
      * @param child Child
      */
-    public void addEdge(T parent, T child) {
-        Node<T> parentNode = getNode(parent);
-        Node<T> childNode = getNode(child);
-        if (parentNode == null) parentNode = createNode(parent);
-        if (childNode == null) childNode = createNode(child);
+    public synchronized void addEdge(T parent, T child) {
+        Node<T> parentNode = addNode(parent);
+        Node<T> childNode = addNode(child);
         parentNode.addChild(childNode);
+        changed();
     }
 
     public Node<T> getNode(T key) {
-        return nodes.get(key);
+        return snapshot().nodes.get(key);
     }
 
     public Collection<Node<T>> getNodes() {
-        return nodes.values();
+        return snapshot().nodes.values();
+    }
+
+    /**
+     * Gets version of graph, incremented by every change
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return snapshot().version;
+    }
+
+    private void changed() {
+        version++;
+        snapshot = null;
+    }
+
+    /**
+     * Gets immutable view of the current graph, building it if the graph changed since the last read
+     *
+     * @return snapshot
+     */
+    private Snapshot<T> snapshot() {
+        Snapshot<T> current = snapshot;
+        if (current != null)
+            return current;
+
+        synchronized (this) {
+            if (snapshot == null)
+                snapshot = new Snapshot<>(nodes, version);
+
+            return snapshot;
+        }
     }
 
     private String getPath(List<Node<T>> path) {
@@ -131,7 +407,164 @@ public class DAG<T> {
     @Override
     public String toString() {
         return "DAG{" +
-                "nodes.size=" + nodes.size() +
+                "nodes.size=" + snapshot().nodes.size() +
                 '}';
     }
+
+    /**
+     * Ready nodes waiting for a free slot, ordered by the longest remaining path they head
+     */
+    private static class Schedule<T> {
+
+        private final Snapshot<T> snapshot;
+        private final Consumer<Node<T>> consumer;
+        private final Executor executor;
+        private final int parallelism;
+        private final Map<Node<T>, Integer> pending = new HashMap<>();
+        private final PriorityQueue<Node<T>> ready;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int running, completed;
+        private Throwable failure;
+
+        private Schedule(Snapshot<T> snapshot, Consumer<Node<T>> consumer, Executor executor, Map<Node<T>, Long> remaining, int parallelism) {
+            this.snapshot = snapshot;
+            this.consumer = consumer;
+            this.executor = executor;
+            this.parallelism = parallelism;
+
+            //Ties keep the order of the graph
+            Map<Node<T>, Integer> index = new HashMap<>();
+            for (Node<T> node : snapshot.order)
+                index.put(node, index.size());
+
+            this.ready = new PriorityQueue<>(Comparator.<Node<T>>comparingLong(remaining::get).reversed().thenComparing(index::get));
+            for (Node<T> node : snapshot.order) {
+                int children = snapshot.children.get(node).size();
+                pending.put(node, children);
+                if (children == 0) ready.add(node);
+            }
+        }
+
+        private void dispatch() {
+            while (true) {
+                List<Node<T>> next = new ArrayList<>();
+                synchronized (this) {
+                    while (running < parallelism && !ready.isEmpty()) {
+                        next.add(ready.poll());
+                        running++;
+                    }
+
+                    if (completed == snapshot.order.size()) {
+                        if (failure == null) done.complete(null);
+                        else done.completeExceptionally(failure);
+                    }
+                }
+
+                //A rejected node counts as failed, loop instead of recursing to dispatch the nodes it released
+                boolean rejected = false;
+                for (Node<T> node : next) {
+                    try {
+                        executor.execute(() -> run(node));
+                    } catch (RejectedExecutionException e) {
+                        complete(node, e);
+                        rejected = true;
+                    }
+                }
+
+                if (!rejected) return;
+            }
+        }
+
+        private void run(Node<T> node) {
+            Throwable thrown = null;
+            try {
+                consumer.accept(node);
+            } catch (Throwable e) {
+                thrown = e;
+            }
+
+            complete(node, thrown);
+            dispatch();
+        }
+
+        private synchronized void complete(Node<T> node, Throwable thrown) {
+            if (thrown != null && failure == null) failure = thrown;
+            running--;
+            completed++;
+            for (Node<T> parent : snapshot.parents.get(node))
+                if (pending.merge(parent, -1, Integer::sum) == 0) ready.add(parent);
+        }
+
+    }
+
+    /**
+     * Immutable copy of nodes and edges, sorted so every node comes after its children
+     */
+    private static class Snapshot<T> {
+
+        private final long version;
+        private final Map<T, Node<T>> nodes;
+        private final Map<Node<T>, List<Node<T>>> children = new HashMap<>();
+        private final Map<Node<T>, List<Node<T>>> parents = new HashMap<>();
+        private final List<Node<T>> order;
+        private final List<Node<T>> cycle;
+
+        private Snapshot(Map<T, Node<T>> graph, long version) {
+            this.version = version;
+            this.nodes = Collections.unmodifiableMap(new LinkedHashMap<>(graph));
+            this.order = new ArrayList<>(graph.size());
+
+            Map<Node<T>, Integer> pending = new HashMap<>();
+            Deque<Node<T>> ready = new ArrayDeque<>();
+            for (Node<T> node : nodes.values()) {
+                children.put(node, List.copyOf(node.getChildren()));
+                parents.put(node, List.copyOf(node.getParents()));
+                pending.put(node, node.getChildren().size());
+                if (node.getChildren().isEmpty()) ready.add(node);
+            }
+
+            while (!ready.isEmpty()) {
+                Node<T> node = ready.poll();
+                order.add(node);
+                for (Node<T> parent : parents.get(node))
+                    if (pending.merge(parent, -1, Integer::sum) == 0) ready.add(parent);
+            }
+
+            this.cycle = order.size() == nodes.size() ? null : findCycle(pending);
+        }
+
+        /**
+         * Walks unsorted nodes, each of them has an unsorted child, until a node repeats
+         *
+         * @param pending amount of unsorted children per node
+         * @return path of cycle
+         */
+        private List<Node<T>> findCycle(Map<Node<T>, Integer> pending) {
+            Node<T> node = null;
+            for (Map.Entry<Node<T>, Integer> entry : pending.entrySet()) {
+                if (entry.getValue() > 0) {
+                    node = entry.getKey();
+                    break;
+                }
+            }
+
+            List<Node<T>> path = new ArrayList<>();
+            Map<Node<T>, Integer> index = new HashMap<>();
+            while (!index.containsKey(node)) {
+                index.put(node, path.size());
+                path.add(node);
+                for (Node<T> child : children.get(node)) {
+                    if (pending.get(child) > 0) {
+                        node = child;
+                        break;
+                    }
+                }
+            }
+
+            List<Node<T>> cycle = new ArrayList<>(path.subList(index.get(node), path.size()));
+            cycle.add(node);
+            return cycle;
+        }
+
+    }
 }
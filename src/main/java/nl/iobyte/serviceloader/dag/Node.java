@@ -1,9 +1,7 @@
 package nl.iobyte.serviceloader.dag;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.function.Consumer;
 
 /**
  * Parent --> Child
@@ -14,58 +12,38 @@ import java.util.function.Consumer;
  */
 public class Node<T> {
 
-    private final List<Node<T>> parents;
-    private final List<Node<T>> children;
+    private final Set<Node<T>> parents;
+    private final Set<Node<T>> children;
     private final T object;
 
     protected Node(T object) {
         this.object = object;
-        parents = new LinkedList<>();
-        children = new LinkedList<>();
-    }
-
-
-    void visit(Consumer<Node<T>> consumer, Set<Node<T>> visited) {
-        consumer.accept(this);
-        visited.add(this);
-        for (Node<T> node : children) {
-            if (visited.contains(node)) continue;
-            node.visit(consumer, visited);
-        }
-    }
-
-    void visitReverse(Consumer<Node<T>> consumer, Set<Node<T>> visited) {
-        for (Node<T> node : children) {
-            if (visited.contains(node)) continue;
-            node.visitReverse(consumer, visited);
-        }
-
-        consumer.accept(this);
-        visited.add(this);
+        parents = new LinkedHashSet<>();
+        children = new LinkedHashSet<>();
     }
 
     public T getObject() {
         return object;
     }
 
-    List<Node<T>> getParents() {
+    Set<Node<T>> getParents() {
         return parents;
     }
 
-    List<Node<T>> getChildren() {
+    Set<Node<T>> getChildren() {
         return children;
     }
 
     public void addParent(Node<T> parent) {
         if (parent == this) throw new CycleFoundException(this + "->" + this);
-        parents.add(parent);
+        if (!parents.add(parent)) return;
         if (parent.getChildren().contains(this)) return;
         parent.addChild(this);
     }
 
     public void addChild(Node<T> child) {
         if (child == this) throw new CycleFoundException(this + "->" + this);
-        children.add(child);
+        if (!children.add(child)) return;
         if (child.getParents().contains(this)) return;
         child.addParent(this);
     }
@@ -86,4 +64,9 @@ public class Node<T> {
             return object.equals(((Node<T>) obj).getObject());
         else return false;
     }
+
+    @Override
+    public int hashCode() {
+        return object.hashCode();
+    }
 }
@@ -0,0 +1,30 @@
+package nl.iobyte.serviceloader.enums;
+
+public enum LifecycleEventType {
+
+    /**
+     * Service was added to the loader
+     */
+    REGISTERED,
+
+    /**
+     * Service instance was created and its dependencies injected
+     */
+    INITIALIZED,
+
+    /**
+     * Service returned from start
+     */
+    STARTED,
+
+    /**
+     * Service was stopped, or released before it started
+     */
+    STOPPED,
+
+    /**
+     * Service failed, either itself or through a dependency
+     */
+    FAILED
+
+}
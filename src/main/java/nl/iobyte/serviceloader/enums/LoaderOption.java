@@ -0,0 +1,25 @@
+package nl.iobyte.serviceloader.enums;
+
+public enum LoaderOption {
+
+    /**
+     * Create and inject services through a generated hidden class per service
+     */
+    GENERATED_INJECTORS,
+
+    /**
+     * Inject services bound by interface through a generated proxy recording per method latency histograms
+     */
+    METRICS,
+
+    /**
+     * Initialize registered classes and the services they depend on, and build their reflection data, on background threads
+     */
+    PRELOAD,
+
+    /**
+     * Only allow services receiving every dependency through their constructor, so they can keep them in final fields or records
+     */
+    CONSTRUCTOR_INJECTION
+
+}
@@ -5,7 +5,9 @@ public enum ServiceState {
     NONE(false, false),
     INIT(true, false),
     START(true, true),
-    STOP(false, false);
+    READY(true, true),
+    STOP(false, false),
+    FAILED(false, false);
 
     private final boolean init, start;
     ServiceState(boolean init, boolean start) {
@@ -0,0 +1,187 @@
+package nl.iobyte.serviceloader.events;
+
+import nl.iobyte.serviceloader.reflections.invokers.MethodInvoker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+public class EventBus {
+
+    private static final System.Logger LOGGER = System.getLogger(EventBus.class.getName());
+    private static final Subscriber[] EMPTY = new Subscriber[0];
+
+    private volatile ExecutorService executor;
+    private volatile boolean closed;
+    private volatile Table table = new Table(EMPTY);
+
+    /**
+     * Subscribe methods of instance
+     * @param owner instance declaring methods
+     * @param methods list of subscriber methods
+     */
+    public synchronized void subscribe(Object owner, List<MethodInvoker<?>> methods) {
+        if(methods.isEmpty())
+            return;
+
+        Subscriber[] current = table.subscribers;
+        Subscriber[] array = Arrays.copyOf(current, current.length + methods.size());
+        for(int i = 0; i < methods.size(); i++)
+            array[current.length + i] = Subscriber.of(owner, methods.get(i).getMethod());
+
+        table = new Table(array);
+    }
+
+    /**
+     * Unsubscribe all methods of instance, also dropping cached dispatch tables referencing its event types
+     * @param owner instance declaring methods
+     */
+    public synchronized void unsubscribe(Object owner) {
+        table = new Table(Arrays.stream(table.subscribers)
+                                .filter(subscriber -> subscriber.getOwner() != owner)
+                                .toArray(Subscriber[]::new));
+    }
+
+    /**
+     * Publish event to all subscribers of its type or super types
+     * @param event event instance
+     */
+    public void publish(Object event) {
+        for(Subscriber subscriber : table.get(event.getClass())) {
+            if(subscriber.isAsync()) {
+                execute(() -> deliver(subscriber, event));
+            } else {
+                deliver(subscriber, event);
+            }
+        }
+    }
+
+    /**
+     * Publish batch of events, async subscribers receive their share of the batch on a single virtual thread
+     * @param events list of events
+     */
+    public void publishAll(List<?> events) {
+        Table current = table;
+        Class<?> last = null;
+        Subscriber[] subscribers = EMPTY;
+        Map<Subscriber, List<Object>> async = null;
+        for(Object event : events) {
+            if(event.getClass() != last) {
+                last = event.getClass();
+                subscribers = current.get(last);
+            }
+
+            for(Subscriber subscriber : subscribers) {
+                if(!subscriber.isAsync()) {
+                    deliver(subscriber, event);
+                    continue;
+                }
+
+                if(async == null)
+                    async = new IdentityHashMap<>();
+
+                async.computeIfAbsent(subscriber, key -> new ArrayList<>()).add(event);
+            }
+        }
+
+        if(async == null)
+            return;
+
+        async.forEach((subscriber, list) -> execute(() -> list.forEach(event -> deliver(subscriber, event))));
+    }
+
+    /**
+     * Publish batch of events
+     * @param events array of events
+     */
+    public void publishAll(Object... events) {
+        publishAll(Arrays.asList(events));
+    }
+
+    /**
+     * Stop async delivery, waiting for queued deliveries to finish, async subscribers are skipped afterwards
+     */
+    public void close() {
+        ExecutorService service;
+        synchronized(this) {
+            closed = true;
+            service = executor;
+            executor = null;
+        }
+
+        if(service != null)
+            service.close();
+    }
+
+    /**
+     * Check if async delivery stopped
+     * @return is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void execute(Runnable delivery) {
+        ExecutorService service = getExecutor();
+        if(service == null)
+            return;
+
+        try {
+            service.execute(delivery);
+        } catch(RejectedExecutionException e) {
+            //Closed between getting the executor and handing it the delivery
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        ExecutorService service = executor;
+        if(service != null || closed)
+            return service;
+
+        synchronized(this) {
+            if(executor == null && !closed)
+                executor = Executors.newVirtualThreadPerTaskExecutor();
+
+            return executor;
+        }
+    }
+
+    private static void deliver(Subscriber subscriber, Object event) {
+        try {
+            subscriber.accept(event);
+        } catch(RuntimeException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "subscriber of "+subscriber.getType().getSimpleName()+" failed", e);
+        }
+    }
+
+    /**
+     * Immutable snapshot of subscribers with dispatch tables per event type
+     */
+    private static class Table {
+
+        private final Subscriber[] subscribers;
+        private final Map<Class<?>, Subscriber[]> dispatch = new ConcurrentHashMap<>();
+
+        private Table(Subscriber[] subscribers) {
+            this.subscribers = subscribers;
+        }
+
+        private Subscriber[] get(Class<?> type) {
+            Subscriber[] array = dispatch.get(type);
+            if(array != null)
+                return array;
+
+            return dispatch.computeIfAbsent(type, key -> Arrays.stream(subscribers)
+                                                             .filter(subscriber -> subscriber.getType().isAssignableFrom(key))
+                                                             .toArray(Subscriber[]::new));
+        }
+
+    }
+
+}
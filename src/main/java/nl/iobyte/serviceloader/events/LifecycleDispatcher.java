@@ -0,0 +1,182 @@
+package nl.iobyte.serviceloader.events;
+
+import nl.iobyte.serviceloader.enums.LifecycleEventType;
+import nl.iobyte.serviceloader.interfaces.ILifecycleListener;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers lifecycle events to listeners on a single dispatcher thread. Publishers claim a slot of a bounded ring
+ * with one compare-and-set and never wait, when the ring is full the event is dropped and counted instead.
+ */
+public class LifecycleDispatcher {
+
+    private static final System.Logger LOGGER = System.getLogger(LifecycleDispatcher.class.getName());
+
+    private final List<ILifecycleListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicReferenceArray<LifecycleEvent> events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread worker;
+    private volatile boolean waiting, closed;
+    private long head;
+
+    public LifecycleDispatcher() {
+        this(1024);
+    }
+
+    public LifecycleDispatcher(int capacity) {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two");
+
+        this.events = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+
+        //Slot i is free for the publisher claiming position i
+        for(int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * Add listener, starting the dispatcher thread with the first one
+     * @param listener lifecycle listener
+     */
+    public void addListener(ILifecycleListener listener) {
+        listeners.add(listener);
+        if(worker == null)
+            startWorker();
+    }
+
+    /**
+     * Remove listener
+     * @param listener lifecycle listener
+     */
+    public void removeListener(ILifecycleListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get amount of events dropped because the queue was full
+     * @return amount of events
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Publish event without waiting, events are only created while someone is listening
+     * @param type kind of transition
+     * @param service type service is registered as
+     * @param cause cause of failure, or null
+     * @return true if event was queued or nobody is listening, false if it was dropped
+     */
+    public boolean publish(LifecycleEventType type, Class<?> service, Throwable cause) {
+        if(listeners.isEmpty() || closed)
+            return true;
+
+        long position = tail.get();
+        while(true) {
+            long available = sequences.get((int) (position & mask)) - position;
+            if(available == 0 && tail.compareAndSet(position, position + 1))
+                break;
+
+            if(available < 0) {
+                //Slot still holds an event from a lap ago, the dispatcher is behind
+                dropped.incrementAndGet();
+                return false;
+            }
+
+            position = tail.get();
+        }
+
+        int index = (int) (position & mask);
+        events.lazySet(index, new LifecycleEvent(type, service, Instant.now(), cause));
+        sequences.set(index, position + 1);
+        if(waiting)
+            LockSupport.unpark(worker);
+
+        return true;
+    }
+
+    /**
+     * Stop dispatcher thread once it delivered the events already queued, later events are ignored
+     */
+    public void close() {
+        closed = true;
+        Thread thread = worker;
+        if(thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    private synchronized void startWorker() {
+        if(worker != null || closed)
+            return;
+
+        Thread thread = Thread.ofPlatform()
+                              .name("serviceloader-lifecycle")
+                              .daemon()
+                              .unstarted(this::run);
+
+        worker = thread;
+        thread.start();
+    }
+
+    private void run() {
+        while(true) {
+            LifecycleEvent event = poll();
+            if(event != null) {
+                deliver(event);
+                continue;
+            }
+
+            if(closed)
+                return;
+
+            //Publishers check the flag after publishing, so recheck the ring before parking
+            waiting = true;
+            if(!isEmpty() || closed) {
+                waiting = false;
+                continue;
+            }
+
+            LockSupport.park(this);
+            waiting = false;
+        }
+    }
+
+    private boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    private LifecycleEvent poll() {
+        if(isEmpty())
+            return null;
+
+        int index = (int) (head & mask);
+        LifecycleEvent event = events.get(index);
+        events.lazySet(index, null);
+        sequences.set(index, head + mask + 1);
+        head++;
+        return event;
+    }
+
+    private void deliver(LifecycleEvent event) {
+        for(ILifecycleListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch(RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "lifecycle listener "+listener.getClass().getName()+" failed on "+event, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package nl.iobyte.serviceloader.events;
+
+import nl.iobyte.serviceloader.enums.LifecycleEventType;
+
+import java.time.Instant;
+
+public class LifecycleEvent {
+
+    private final LifecycleEventType type;
+    private final Class<?> service;
+    private final Instant timestamp;
+    private final Throwable cause;
+
+    public LifecycleEvent(LifecycleEventType type, Class<?> service, Instant timestamp, Throwable cause) {
+        this.type = type;
+        this.service = service;
+        this.timestamp = timestamp;
+        this.cause = cause;
+    }
+
+    /**
+     * Get kind of transition
+     * @return event type
+     */
+    public LifecycleEventType getType() {
+        return type;
+    }
+
+    /**
+     * Get type service is registered as
+     * @return service type
+     */
+    public Class<?> getService() {
+        return service;
+    }
+
+    /**
+     * Get moment of transition, taken on the thread making it
+     * @return timestamp
+     */
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get cause of failure
+     * @return cause, or null if event is not a failure
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return "LifecycleEvent{" +
+                "type=" + type +
+                ", service=" + service.getName() +
+                ", timestamp=" + timestamp +
+                (cause != null ? ", cause=" + cause : "") +
+                '}';
+    }
+
+}
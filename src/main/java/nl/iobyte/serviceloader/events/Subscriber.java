@@ -0,0 +1,131 @@
+package nl.iobyte.serviceloader.events;
+
+import nl.iobyte.serviceloader.annotations.Subscribe;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Consumer;
+
+public class Subscriber {
+
+    private final Object owner;
+    private final Class<?> type;
+    private final Consumer<Object> handler;
+    private final boolean async;
+
+    private Subscriber(Object owner, Class<?> type, Consumer<Object> handler, boolean async) {
+        this.owner = owner;
+        this.type = type;
+        this.handler = handler;
+        this.async = async;
+    }
+
+    /**
+     * Get instance owning subscriber method
+     * @return owner
+     */
+    public Object getOwner() {
+        return owner;
+    }
+
+    /**
+     * Get event type
+     * @return type
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Check if events are delivered asynchronously
+     * @return is async
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Deliver event to subscriber
+     * @param event event instance
+     */
+    public void accept(Object event) {
+        handler.accept(event);
+    }
+
+    /**
+     * Validate method can be used as subscriber
+     * @param method annotated method
+     */
+    public static void validate(Method method) {
+        if(Modifier.isStatic(method.getModifiers()))
+            throw new IllegalStateException("subscriber method "+method.getName()+" can't be static");
+
+        if(method.getParameterCount() != 1 || method.getParameterTypes()[0].isPrimitive())
+            throw new IllegalStateException("subscriber method "+method.getName()+" must have exactly one event parameter");
+    }
+
+    /**
+     * Bind subscriber method to instance
+     * @param owner instance declaring method
+     * @param method annotated method
+     * @return subscriber instance
+     */
+    public static Subscriber of(Object owner, Method method) {
+        validate(method);
+        Subscribe annotation = method.getAnnotation(Subscribe.class);
+        return new Subscriber(
+                owner,
+                method.getParameterTypes()[0],
+                compile(owner, method),
+                annotation != null && annotation.async()
+        );
+    }
+
+    /**
+     * Compile method into consumer, using a generated lambda where the method is accessible
+     * @param owner instance declaring method
+     * @param method subscriber method
+     * @return event consumer
+     */
+    @SuppressWarnings("unchecked")
+    private static Consumer<Object> compile(Object owner, Method method) {
+        MethodHandles.Lookup lookup;
+        MethodHandle handle;
+        try {
+            lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            handle = lookup.unreflect(method);
+        } catch(IllegalAccessException e) {
+            throw new IllegalStateException("subscriber method "+method.getName()+" is not accessible", e);
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "accept",
+                    MethodType.methodType(Consumer.class, method.getDeclaringClass()),
+                    MethodType.methodType(void.class, Object.class),
+                    handle,
+                    MethodType.methodType(void.class, method.getParameterTypes()[0])
+            );
+
+            return (Consumer<Object>) site.getTarget().invoke(owner);
+        } catch(Throwable e) {
+            MethodHandle bound = handle.bindTo(owner).asType(MethodType.methodType(void.class, Object.class));
+            return event -> {
+                try {
+                    bound.invokeExact(event);
+                } catch(RuntimeException | Error ex) {
+                    throw ex;
+                } catch(Throwable ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,522 @@
+package nl.iobyte.serviceloader.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class file writer for generated straight-line classes
+ */
+public class BytecodeWriter {
+
+    public static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_STATIC = 0x0008, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    public static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13,
+            ILOAD = 0x15, LLOAD = 0x16, FLOAD = 0x17, DLOAD = 0x18, ALOAD = 0x19, AALOAD = 0x32,
+            ISTORE = 0x36, LSTORE = 0x37, FSTORE = 0x38, DSTORE = 0x39, ASTORE = 0x3a, AASTORE = 0x53,
+            POP = 0x57, DUP = 0x59, LSUB = 0x65,
+            IRETURN = 0xac, LRETURN = 0xad, FRETURN = 0xae, DRETURN = 0xaf, ARETURN = 0xb0, RETURN = 0xb1,
+            GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8,
+            INVOKEINTERFACE = 0xb9, NEW = 0xbb, ANEWARRAY = 0xbd, ATHROW = 0xbf, CHECKCAST = 0xc0;
+
+    private static final int VERSION = 61;
+
+    private final List<byte[]> pool = new ArrayList<>();
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+    private final int thisClass, superClass;
+    private final int[] interfaces;
+
+    public BytecodeWriter(String name, String superName, String... interfaces) {
+        this.thisClass = classConstant(name);
+        this.superClass = classConstant(superName);
+        this.interfaces = new int[interfaces.length];
+        for(int i = 0; i < interfaces.length; i++)
+            this.interfaces[i] = classConstant(interfaces[i]);
+    }
+
+    /* ##############
+    #   Constants   #
+    ############## */
+
+    private int constant(String key, byte[] entry) {
+        return poolIndex.computeIfAbsent(key, k -> {
+            pool.add(entry);
+            return pool.size();
+        });
+    }
+
+    private int utf8(String value) {
+        return constant("U" + value, write(out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        }));
+    }
+
+    private int classConstant(String name) {
+        int index = utf8(name);
+        return constant("C" + name, write(out -> {
+            out.writeByte(7);
+            out.writeShort(index);
+        }));
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name), descriptorIndex = utf8(descriptor);
+        return constant("N" + name + ":" + descriptor, write(out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        }));
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classConstant(owner), typeIndex = nameAndType(name, descriptor);
+        return constant(tag + owner + "." + name + ":" + descriptor, write(out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(typeIndex);
+        }));
+    }
+
+    /* ############
+    #   Members   #
+    ############ */
+
+    /**
+     * Add field to class
+     * @param access access flags
+     * @param name field name
+     * @param descriptor field descriptor
+     */
+    public void field(int access, String name, String descriptor) {
+        int nameIndex = utf8(name), descriptorIndex = utf8(descriptor);
+        fields.add(write(out -> {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(0);
+        }));
+    }
+
+    /**
+     * Add method to class
+     * @param access access flags
+     * @param name method name
+     * @param descriptor method descriptor
+     * @return code writer of method
+     */
+    public Code method(int access, String name, String descriptor) {
+        Code code = new Code(access, utf8(name), utf8(descriptor));
+        methods.add(code);
+        return code;
+    }
+
+    /**
+     * Get class file bytes
+     * @return array of bytes
+     */
+    public byte[] toByteArray() {
+        int codeIndex = utf8("Code");
+        int frameIndex = methods.stream().anyMatch(code -> code.frames.size() != 0) ? utf8("StackMapTable") : 0;
+        return write(out -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(pool.size() + 1);
+            for(byte[] entry : pool)
+                out.write(entry);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for(int index : interfaces)
+                out.writeShort(index);
+
+            out.writeShort(fields.size());
+            for(byte[] field : fields)
+                out.write(field);
+
+            out.writeShort(methods.size());
+            for(Code code : methods)
+                code.write(out, codeIndex, frameIndex);
+
+            out.writeShort(0);
+        });
+    }
+
+    /* ##########
+    #   Types   #
+    ########## */
+
+    /**
+     * Get internal name of type as used in class constants
+     * @param type class type
+     * @return internal name
+     */
+    public static String internalName(Class<?> type) {
+        if(type.isArray())
+            return descriptor(type);
+
+        return type.getName().replace('.', '/');
+    }
+
+    /**
+     * Get field descriptor of type
+     * @param type class type
+     * @return descriptor
+     */
+    public static String descriptor(Class<?> type) {
+        if(type.isArray())
+            return "[" + descriptor(type.getComponentType());
+
+        if(!type.isPrimitive())
+            return "L" + internalName(type) + ";";
+
+        if(type == void.class) return "V";
+        if(type == boolean.class) return "Z";
+        if(type == byte.class) return "B";
+        if(type == char.class) return "C";
+        if(type == short.class) return "S";
+        if(type == int.class) return "I";
+        if(type == long.class) return "J";
+        if(type == float.class) return "F";
+        return "D";
+    }
+
+    /**
+     * Get method descriptor of types
+     * @param returnType return type
+     * @param parameters array of parameter types
+     * @return descriptor
+     */
+    public static String descriptor(Class<?> returnType, Class<?>... parameters) {
+        StringBuilder sb = new StringBuilder("(");
+        for(Class<?> parameter : parameters)
+            sb.append(descriptor(parameter));
+
+        return sb.append(")").append(descriptor(returnType)).toString();
+    }
+
+    /**
+     * Get amount of local variable slots used by type
+     * @param type class type
+     * @return amount of slots
+     */
+    public static int slots(Class<?> type) {
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    /**
+     * Get load opcode for type
+     * @param type class type
+     * @return opcode
+     */
+    public static int loadOpcode(Class<?> type) {
+        if(!type.isPrimitive()) return ALOAD;
+        if(type == long.class) return LLOAD;
+        if(type == float.class) return FLOAD;
+        if(type == double.class) return DLOAD;
+        return ILOAD;
+    }
+
+    /**
+     * Get return opcode for type
+     * @param type class type
+     * @return opcode
+     */
+    public static int returnOpcode(Class<?> type) {
+        if(type == void.class) return RETURN;
+        if(!type.isPrimitive()) return ARETURN;
+        if(type == long.class) return LRETURN;
+        if(type == float.class) return FRETURN;
+        if(type == double.class) return DRETURN;
+        return IRETURN;
+    }
+
+    private static byte[] write(Output output) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            output.write(new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface Output {
+
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+    /**
+     * Code attribute of a generated method
+     */
+    public class Code {
+
+        private final int access, name, descriptor;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream handlers = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        private int handlerCount, frameCount, lastFrame = -1, maxStack, maxLocals;
+
+        private Code(int access, int name, int descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        /**
+         * Get current bytecode offset
+         * @return offset
+         */
+        public int offset() {
+            return code.size();
+        }
+
+        /**
+         * Emit instruction without operands
+         * @param opcode instruction
+         * @return code writer
+         */
+        public Code op(int opcode) {
+            code.write(opcode);
+            return this;
+        }
+
+        /**
+         * Emit instruction with local variable index
+         * @param opcode load or store instruction
+         * @param index local variable index
+         * @return code writer
+         */
+        public Code var(int opcode, int index) {
+            if(index > 255) {
+                code.write(0xc4);
+                code.write(opcode);
+                code.write(index >> 8);
+            } else {
+                code.write(opcode);
+            }
+
+            code.write(index);
+            return this;
+        }
+
+        /**
+         * Push int constant
+         * @param value constant
+         * @return code writer
+         */
+        public Code push(int value) {
+            if(value >= -1 && value <= 5)
+                return op(ICONST_0 + value);
+
+            if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(value);
+                return this;
+            }
+
+            code.write(SIPUSH);
+            return u2(value);
+        }
+
+        /**
+         * Emit instruction with class operand
+         * @param opcode new, checkcast or anewarray
+         * @param type internal name
+         * @return code writer
+         */
+        public Code type(int opcode, String type) {
+            code.write(opcode);
+            return u2(classConstant(type));
+        }
+
+        /**
+         * Push class constant
+         * @param type internal name
+         * @return code writer
+         */
+        public Code ldc(String type) {
+            code.write(LDC_W);
+            return u2(classConstant(type));
+        }
+
+        /**
+         * Emit field instruction
+         * @param opcode getfield or putfield
+         * @param owner internal name of owner
+         * @param name field name
+         * @param descriptor field descriptor
+         * @return code writer
+         */
+        public Code field(int opcode, String owner, String name, String descriptor) {
+            code.write(opcode);
+            return u2(member(9, owner, name, descriptor));
+        }
+
+        /**
+         * Emit invoke instruction
+         * @param opcode invoke instruction
+         * @param owner internal name of owner
+         * @param name method name
+         * @param descriptor method descriptor
+         * @param isInterface owner is interface
+         * @return code writer
+         */
+        public Code invoke(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            code.write(opcode);
+            u2(member(isInterface ? 11 : 10, owner, name, descriptor));
+            if(opcode == INVOKEINTERFACE) {
+                code.write(argumentSlots(descriptor) + 1);
+                code.write(0);
+            }
+
+            return this;
+        }
+
+        /**
+         * Register exception handler covering range
+         * @param start first offset
+         * @param end exclusive end offset
+         * @param handler handler offset
+         * @return code writer
+         */
+        public Code handler(int start, int end, int handler) {
+            handlerCount++;
+            handlers.write(start >> 8);
+            handlers.write(start);
+            handlers.write(end >> 8);
+            handlers.write(end);
+            handlers.write(handler >> 8);
+            handlers.write(handler);
+            handlers.write(0);
+            handlers.write(0);
+            return this;
+        }
+
+        /**
+         * Add full stack map frame at current offset
+         * @param locals verification types of locals
+         * @param stack verification types of stack
+         * @return code writer
+         */
+        public Code frame(List<String> locals, List<String> stack) {
+            int offset = offset();
+            int delta = lastFrame == -1 ? offset : offset - lastFrame - 1;
+            lastFrame = offset;
+            frameCount++;
+
+            frames.write(255);
+            frames.write(delta >> 8);
+            frames.write(delta);
+            writeTypes(locals);
+            writeTypes(stack);
+            return this;
+        }
+
+        private void writeTypes(List<String> types) {
+            frames.write(types.size() >> 8);
+            frames.write(types.size());
+            for(String type : types) {
+                switch(type) {
+                    case "I" -> frames.write(1);
+                    case "F" -> frames.write(2);
+                    case "D" -> frames.write(3);
+                    case "J" -> frames.write(4);
+                    default -> {
+                        int index = classConstant(type);
+                        frames.write(7);
+                        frames.write(index >> 8);
+                        frames.write(index);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Set maximum stack size and amount of locals
+         * @param stack maximum stack size
+         * @param locals amount of locals
+         * @return code writer
+         */
+        public Code maxs(int stack, int locals) {
+            this.maxStack = stack;
+            this.maxLocals = locals;
+            return this;
+        }
+
+        private Code u2(int value) {
+            code.write(value >> 8);
+            code.write(value);
+            return this;
+        }
+
+        private void write(DataOutputStream out, int codeIndex, int frameIndex) throws IOException {
+            byte[] bytes = code.toByteArray();
+            byte[] table = handlers.toByteArray();
+            byte[] map = frames.toByteArray();
+            boolean hasFrames = frameCount != 0;
+
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeIndex);
+            out.writeInt(12 + bytes.length + table.length + (hasFrames ? 8 + map.length : 0));
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(handlerCount);
+            out.write(table);
+            out.writeShort(hasFrames ? 1 : 0);
+            if(hasFrames) {
+                out.writeShort(frameIndex);
+                out.writeInt(2 + map.length);
+                out.writeShort(frameCount);
+                out.write(map);
+            }
+        }
+
+    }
+
+    /**
+     * Get amount of argument slots in method descriptor
+     * @param descriptor method descriptor
+     * @return amount of slots
+     */
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        for(int i = 1; descriptor.charAt(i) != ')'; i++) {
+            char c = descriptor.charAt(i);
+            while(c == '[') {
+                c = descriptor.charAt(++i);
+                if(c != '[') {
+                    if(c == 'L')
+                        i = descriptor.indexOf(';', i);
+
+                    c = 'A';
+                    break;
+                }
+            }
+
+            if(c == 'L')
+                i = descriptor.indexOf(';', i);
+
+            slots += c == 'J' || c == 'D' ? 2 : 1;
+        }
+
+        return slots;
+    }
+
+}
@@ -0,0 +1,170 @@
+package nl.iobyte.serviceloader.generator;
+
+import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.interfaces.IInjector;
+import nl.iobyte.serviceloader.interfaces.IService;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+
+import static nl.iobyte.serviceloader.generator.BytecodeWriter.*;
+
+public class InjectorGenerator {
+
+    private static final System.Logger LOGGER = System.getLogger(InjectorGenerator.class.getName());
+
+    private static final String LOADER = internalName(ServiceLoader.class);
+    private static final String SERVICE = internalName(IService.class);
+    private static final String GENERATOR = internalName(InjectorGenerator.class);
+
+    /**
+     * Generate hidden class creating the service and assigning its fields in straight-line bytecode
+     * @param type service type
+     * @param parameters constructor parameter types
+     * @param fields fields holding a single service
+     * @param bindings fields holding multiple services, with their element type
+     * @return injector instance, or null if the service can't be accessed from a generated class
+     * @param <T> type
+     */
+    public static <T extends IService> IInjector<T> generate(Class<T> type, Class<?>[] parameters, List<Field> fields, Map<Field, Class<?>> bindings) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            if(!lookup.hasFullPrivilegeAccess() || type.isHidden() || Modifier.isAbstract(type.getModifiers()))
+                return null;
+
+            //Check access for everything the generated class references
+            for(Class<?> parameter : parameters)
+                lookup.accessClass(parameter);
+
+            for(Field field : fields)
+                if(!isAccessible(lookup, type, field))
+                    return null;
+
+            for(Map.Entry<Field, Class<?>> entry : bindings.entrySet()) {
+                if(!isAccessible(lookup, type, entry.getKey()))
+                    return null;
+
+                lookup.accessClass(entry.getValue());
+            }
+
+            byte[] bytes = write(type, parameters, fields, bindings);
+            Class<?> hidden = lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE).lookupClass();
+
+            //The class was just written to construct and inject instances of type
+            @SuppressWarnings("unchecked")
+            IInjector<T> injector = (IInjector<T>) hidden.getConstructor().newInstance();
+            return injector;
+        } catch(ReflectiveOperationException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "service "+type.getName()+" is not accessible from a generated injector", e);
+            return null;
+        } catch(LinkageError | IllegalArgumentException e) {
+            //Rejected bytecode is a generator bug, not a property of the service
+            LOGGER.log(System.Logger.Level.WARNING, "generated injector of "+type.getName()+" failed to load, falling back to reflection", e);
+            return null;
+        }
+    }
+
+    private static boolean isAccessible(MethodHandles.Lookup lookup, Class<?> type, Field field) throws IllegalAccessException {
+        int modifiers = field.getModifiers();
+        if(Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers))
+            return false;
+
+        Class<?> owner = field.getDeclaringClass();
+        lookup.accessClass(owner);
+        lookup.accessClass(field.getType());
+        if(Modifier.isPublic(modifiers))
+            return true;
+
+        if(Modifier.isPrivate(modifiers))
+            return owner.isNestmateOf(type);
+
+        return owner.getPackageName().equals(type.getPackageName()) && owner.getClassLoader() == type.getClassLoader();
+    }
+
+    private static byte[] write(Class<?> type, Class<?>[] parameters, List<Field> fields, Map<Field, Class<?>> bindings) {
+        String name = internalName(type);
+        BytecodeWriter writer = new BytecodeWriter(name + "$$Injector", "java/lang/Object", internalName(IInjector.class));
+        String require = descriptor(IService.class, ServiceLoader.class, Class.class);
+        String bind = descriptor(Object.class, ServiceLoader.class, Class.class, Class.class);
+
+        writer.method(ACC_PUBLIC, "<init>", "()V")
+              .var(ALOAD, 0)
+              .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false)
+              .op(RETURN)
+              .maxs(1, 1);
+
+        //Constructor with resolved parameters
+        BytecodeWriter.Code create = writer.method(ACC_PUBLIC, "create", "(L" + LOADER + ";)L" + SERVICE + ";");
+        create.type(NEW, name).op(DUP);
+        for(Class<?> parameter : parameters) {
+            create.var(ALOAD, 1)
+                  .ldc(internalName(parameter))
+                  .invoke(INVOKESTATIC, GENERATOR, "require", require, false)
+                  .type(CHECKCAST, internalName(parameter));
+        }
+
+        create.invoke(INVOKESPECIAL, name, "<init>", descriptor(void.class, parameters), false)
+              .op(ARETURN)
+              .maxs(parameters.length + 4, 2);
+
+        //Field assignments
+        BytecodeWriter.Code inject = writer.method(ACC_PUBLIC, "inject", "(L" + SERVICE + ";L" + LOADER + ";)V");
+        inject.var(ALOAD, 1).type(CHECKCAST, name).var(ASTORE, 3);
+        for(Field field : fields) {
+            inject.var(ALOAD, 3)
+                  .var(ALOAD, 2)
+                  .ldc(internalName(field.getType()))
+                  .invoke(INVOKESTATIC, GENERATOR, "require", require, false)
+                  .type(CHECKCAST, internalName(field.getType()))
+                  .field(PUTFIELD, internalName(field.getDeclaringClass()), field.getName(), descriptor(field.getType()));
+        }
+
+        for(Map.Entry<Field, Class<?>> entry : bindings.entrySet()) {
+            Field field = entry.getKey();
+            inject.var(ALOAD, 3)
+                  .var(ALOAD, 2)
+                  .ldc(internalName(entry.getValue()))
+                  .ldc(internalName(field.getType()))
+                  .invoke(INVOKESTATIC, GENERATOR, "bind", bind, false)
+                  .type(CHECKCAST, internalName(field.getType()))
+                  .field(PUTFIELD, internalName(field.getDeclaringClass()), field.getName(), descriptor(field.getType()));
+        }
+
+        inject.op(RETURN).maxs(4, 4);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Resolve service or fail
+     * @param loader service loader
+     * @param type service type
+     * @return service instance
+     */
+    public static IService require(ServiceLoader loader, Class<? extends IService> type) {
+        IService value = loader.resolve(type);
+        if(value == null)
+            throw new IllegalStateException("unable to resolve service "+type.getSimpleName());
+
+        return value;
+    }
+
+    /**
+     * Resolve all services of element type as value for a field
+     * @param loader service loader
+     * @param element element type
+     * @param fieldType array or list type
+     * @return array or list of service instances
+     */
+    public static Object bind(ServiceLoader loader, Class<?> element, Class<?> fieldType) {
+        List<?> values = loader.resolveAll(element);
+        if(!fieldType.isArray())
+            return values;
+
+        return values.toArray((Object[]) Array.newInstance(element, values.size()));
+    }
+
+}
@@ -0,0 +1,380 @@
+package nl.iobyte.serviceloader.generator;
+
+import nl.iobyte.serviceloader.interfaces.IMethodHandler;
+import nl.iobyte.serviceloader.metrics.Histogram;
+import nl.iobyte.serviceloader.metrics.ServiceMetrics;
+import nl.iobyte.serviceloader.objects.Shards;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static nl.iobyte.serviceloader.generator.BytecodeWriter.*;
+
+public class ProxyGenerator {
+
+    private static final String SHARDS = internalName(Shards.class);
+    private static final String HISTOGRAM = internalName(Histogram.class);
+    private static final String HANDLER = internalName(IMethodHandler.class);
+
+    /**
+     * Create proxy of interface routing every call to the shard of the calling thread
+     * @param type interface type
+     * @param shards shards to route to
+     * @return proxy instance
+     * @param <T> type
+     */
+    public static <T> T shards(Class<T> type, Shards<?> shards) {
+        if(!type.isInterface())
+            throw new IllegalStateException("type "+type.getSimpleName()+" is not an interface");
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            if(lookup.hasFullPrivilegeAccess() && !type.isHidden()) {
+                byte[] bytes = writeShards(type, getMethods(type));
+                Class<?> hidden = lookup.defineHiddenClass(bytes, true).lookupClass();
+                return type.cast(hidden.getConstructor(Shards.class).newInstance(shards));
+            }
+        } catch(ReflectiveOperationException | LinkageError | IllegalArgumentException e) {
+            //Fall back to reflective proxy
+        }
+
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (instance, method, args) -> {
+            if(method.getDeclaringClass() == Object.class)
+                return switch(method.getName()) {
+                    case "hashCode" -> System.identityHashCode(instance);
+                    case "equals" -> instance == args[0];
+                    default -> type.getName() + "$$Shards@" + Integer.toHexString(System.identityHashCode(instance));
+                };
+
+            try {
+                return method.invoke(shards.get(), args);
+            } catch(InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+
+        return type.cast(proxy);
+    }
+
+    /**
+     * Create proxy of interface recording the latency of every call into the histograms of metrics
+     * @param type interface type
+     * @param target instance to delegate to
+     * @param metrics metrics of interface
+     * @return proxy instance
+     * @param <T> type
+     */
+    public static <T> T timing(Class<T> type, Object target, ServiceMetrics metrics) {
+        if(!type.isInterface())
+            throw new IllegalStateException("type "+type.getSimpleName()+" is not an interface");
+
+        Histogram[] histograms = metrics.getHistograms();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            if(lookup.hasFullPrivilegeAccess() && !type.isHidden()) {
+                byte[] bytes = writeTiming(type, metrics.getMethods());
+                Class<?> hidden = lookup.defineHiddenClass(bytes, true).lookupClass();
+                return type.cast(hidden.getConstructor(type, Histogram[].class).newInstance(target, histograms));
+            }
+        } catch(ReflectiveOperationException | LinkageError | IllegalArgumentException e) {
+            //Fall back to reflective proxy
+        }
+
+        List<Method> methods = metrics.getMethods();
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (instance, method, args) -> {
+            //Methods not measured, like those of Object, are still unwrapped like the rest
+            int index = methods.indexOf(method);
+            long start = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } catch(InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if(index != -1)
+                    histograms[index].record(System.nanoTime() - start);
+            }
+        });
+
+        return type.cast(proxy);
+    }
+
+    /**
+     * Create proxy of interface passing calls of handled methods to their handler with boxed arguments
+     * @param type interface type
+     * @param target instance to delegate to
+     * @param handlers handler per method in the order of {@link #getMethods(Class)}, null for methods to delegate
+     * @return proxy instance
+     * @param <T> type
+     */
+    public static <T> T handlers(Class<T> type, Object target, IMethodHandler[] handlers) {
+        if(!type.isInterface())
+            throw new IllegalStateException("type "+type.getSimpleName()+" is not an interface");
+
+        List<Method> methods = getMethods(type);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            if(lookup.hasFullPrivilegeAccess() && !type.isHidden()) {
+                byte[] bytes = writeHandlers(type, methods, handlers);
+                Class<?> hidden = lookup.defineHiddenClass(bytes, true).lookupClass();
+                return type.cast(hidden.getConstructor(type, IMethodHandler[].class).newInstance(target, handlers.clone()));
+            }
+        } catch(ReflectiveOperationException | LinkageError | IllegalArgumentException e) {
+            //Fall back to reflective proxy
+        }
+
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (instance, method, args) -> {
+            int index = methods.indexOf(method);
+            if(index != -1 && handlers[index] != null)
+                return handlers[index].invoke(args == null ? new Object[0] : args);
+
+            try {
+                return method.invoke(target, args);
+            } catch(InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+
+        return type.cast(proxy);
+    }
+
+    /**
+     * Get abstract and default instance methods of interface and its super interfaces, once per signature
+     * @param type interface type
+     * @return list of methods
+     */
+    public static List<Method> getMethods(Class<?> type) {
+        Set<String> signatures = new HashSet<>();
+        return Arrays.stream(type.getMethods())
+                     .filter(method -> !Modifier.isStatic(method.getModifiers()))
+                     .filter(method -> signatures.add(method.getName() + descriptor(method.getReturnType(), method.getParameterTypes())))
+                     .toList();
+    }
+
+    private static byte[] writeShards(Class<?> type, List<Method> methods) {
+        String name = internalName(type);
+        String proxy = name + "$$Shards";
+        BytecodeWriter writer = new BytecodeWriter(proxy, "java/lang/Object", name);
+        writer.field(ACC_PRIVATE | ACC_FINAL, "shards", "L" + SHARDS + ";");
+
+        writer.method(ACC_PUBLIC, "<init>", "(L" + SHARDS + ";)V")
+              .var(ALOAD, 0)
+              .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false)
+              .var(ALOAD, 0)
+              .var(ALOAD, 1)
+              .field(PUTFIELD, proxy, "shards", "L" + SHARDS + ";")
+              .op(RETURN)
+              .maxs(2, 2);
+
+        //Delegate to shard of calling thread
+        for(Method method : methods) {
+            String descriptor = descriptor(method.getReturnType(), method.getParameterTypes());
+            BytecodeWriter.Code code = writer.method(ACC_PUBLIC, method.getName(), descriptor);
+            code.var(ALOAD, 0)
+                .field(GETFIELD, proxy, "shards", "L" + SHARDS + ";")
+                .invoke(INVOKEVIRTUAL, SHARDS, "get", "()Ljava/lang/Object;", false)
+                .type(CHECKCAST, name);
+
+            int slot = 1;
+            for(Class<?> parameter : method.getParameterTypes()) {
+                code.var(loadOpcode(parameter), slot);
+                slot += slots(parameter);
+            }
+
+            code.invoke(INVOKEINTERFACE, name, method.getName(), descriptor, true)
+                .op(returnOpcode(method.getReturnType()))
+                .maxs(Math.max(slot, slots(method.getReturnType())), slot);
+        }
+
+        return writer.toByteArray();
+    }
+
+    private static byte[] writeTiming(Class<?> type, List<Method> methods) {
+        String name = internalName(type);
+        String proxy = name + "$$Timing";
+        BytecodeWriter writer = new BytecodeWriter(proxy, "java/lang/Object", name);
+        writer.field(ACC_PRIVATE | ACC_FINAL, "target", "L" + name + ";");
+        writer.field(ACC_PRIVATE | ACC_FINAL, "histograms", "[L" + HISTOGRAM + ";");
+
+        writer.method(ACC_PUBLIC, "<init>", "(L" + name + ";[L" + HISTOGRAM + ";)V")
+              .var(ALOAD, 0)
+              .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false)
+              .var(ALOAD, 0)
+              .var(ALOAD, 1)
+              .field(PUTFIELD, proxy, "target", "L" + name + ";")
+              .var(ALOAD, 0)
+              .var(ALOAD, 2)
+              .field(PUTFIELD, proxy, "histograms", "[L" + HISTOGRAM + ";")
+              .op(RETURN)
+              .maxs(2, 3);
+
+        //Record elapsed time after the call returns or throws
+        for(int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            String descriptor = descriptor(method.getReturnType(), method.getParameterTypes());
+            BytecodeWriter.Code code = writer.method(ACC_PUBLIC, method.getName(), descriptor);
+
+            List<String> locals = new ArrayList<>();
+            locals.add(proxy);
+            int slot = 1;
+            for(Class<?> parameter : method.getParameterTypes()) {
+                locals.add(verificationType(parameter));
+                slot += slots(parameter);
+            }
+            locals.add("J");
+
+            int start = slot;
+            code.invoke(INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false)
+                .var(LSTORE, start);
+
+            int from = code.offset();
+            code.var(ALOAD, 0).field(GETFIELD, proxy, "target", "L" + name + ";");
+            slot = 1;
+            for(Class<?> parameter : method.getParameterTypes()) {
+                code.var(loadOpcode(parameter), slot);
+                slot += slots(parameter);
+            }
+
+            code.invoke(INVOKEINTERFACE, name, method.getName(), descriptor, true);
+            int to = code.offset();
+            record(code, proxy, i, start)
+                .op(returnOpcode(method.getReturnType()));
+
+            int handler = code.offset();
+            code.handler(from, to, handler)
+                .frame(locals, List.of("java/lang/Throwable"))
+                .var(ASTORE, start + 2);
+
+            record(code, proxy, i, start)
+                .var(ALOAD, start + 2)
+                .op(ATHROW)
+                .maxs(Math.max(slot, slots(method.getReturnType()) + 5), start + 3);
+        }
+
+        return writer.toByteArray();
+    }
+
+    private static BytecodeWriter.Code record(BytecodeWriter.Code code, String proxy, int index, int start) {
+        return code.var(ALOAD, 0)
+                   .field(GETFIELD, proxy, "histograms", "[L" + HISTOGRAM + ";")
+                   .push(index)
+                   .op(AALOAD)
+                   .invoke(INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false)
+                   .var(LLOAD, start)
+                   .op(LSUB)
+                   .invoke(INVOKEVIRTUAL, HISTOGRAM, "record", "(J)V", false);
+    }
+
+    /**
+     * Get stack map verification type of parameter
+     * @param type parameter type
+     * @return I, F, J, D or internal name
+     */
+    private static String verificationType(Class<?> type) {
+        if(!type.isPrimitive())
+            return internalName(type);
+
+        if(type == long.class) return "J";
+        if(type == float.class) return "F";
+        if(type == double.class) return "D";
+        return "I";
+    }
+
+    private static byte[] writeHandlers(Class<?> type, List<Method> methods, IMethodHandler[] handlers) {
+        String name = internalName(type);
+        String proxy = name + "$$Handlers";
+        BytecodeWriter writer = new BytecodeWriter(proxy, "java/lang/Object", name);
+        writer.field(ACC_PRIVATE | ACC_FINAL, "target", "L" + name + ";");
+        writer.field(ACC_PRIVATE | ACC_FINAL, "handlers", "[L" + HANDLER + ";");
+
+        writer.method(ACC_PUBLIC, "<init>", "(L" + name + ";[L" + HANDLER + ";)V")
+              .var(ALOAD, 0)
+              .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false)
+              .var(ALOAD, 0)
+              .var(ALOAD, 1)
+              .field(PUTFIELD, proxy, "target", "L" + name + ";")
+              .var(ALOAD, 0)
+              .var(ALOAD, 2)
+              .field(PUTFIELD, proxy, "handlers", "[L" + HANDLER + ";")
+              .op(RETURN)
+              .maxs(2, 3);
+
+        for(int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            Class<?>[] parameters = method.getParameterTypes();
+            String descriptor = descriptor(method.getReturnType(), parameters);
+            BytecodeWriter.Code code = writer.method(ACC_PUBLIC, method.getName(), descriptor);
+            if(handlers[i] == null) {
+                code.var(ALOAD, 0).field(GETFIELD, proxy, "target", "L" + name + ";");
+                int slot = 1;
+                for(Class<?> parameter : parameters) {
+                    code.var(loadOpcode(parameter), slot);
+                    slot += slots(parameter);
+                }
+
+                code.invoke(INVOKEINTERFACE, name, method.getName(), descriptor, true)
+                    .op(returnOpcode(method.getReturnType()))
+                    .maxs(Math.max(slot, slots(method.getReturnType())), slot);
+                continue;
+            }
+
+            //Box arguments into array and unbox result of handler
+            code.var(ALOAD, 0)
+                .field(GETFIELD, proxy, "handlers", "[L" + HANDLER + ";")
+                .push(i)
+                .op(AALOAD)
+                .push(parameters.length)
+                .type(ANEWARRAY, "java/lang/Object");
+
+            int slot = 1;
+            for(int j = 0; j < parameters.length; j++) {
+                code.op(DUP).push(j).var(loadOpcode(parameters[j]), slot);
+                box(code, parameters[j]).op(AASTORE);
+                slot += slots(parameters[j]);
+            }
+
+            code.invoke(INVOKEINTERFACE, HANDLER, "invoke", "([Ljava/lang/Object;)Ljava/lang/Object;", true);
+            unbox(code, method.getReturnType())
+                .op(returnOpcode(method.getReturnType()))
+                .maxs(6, slot);
+        }
+
+        return writer.toByteArray();
+    }
+
+    private static BytecodeWriter.Code box(BytecodeWriter.Code code, Class<?> type) {
+        if(!type.isPrimitive())
+            return code;
+
+        Class<?> wrapper = wrapper(type);
+        return code.invoke(INVOKESTATIC, internalName(wrapper), "valueOf", descriptor(wrapper, type), false);
+    }
+
+    private static BytecodeWriter.Code unbox(BytecodeWriter.Code code, Class<?> type) {
+        if(!type.isPrimitive())
+            return code.type(CHECKCAST, internalName(type));
+
+        Class<?> wrapper = wrapper(type);
+        return code.type(CHECKCAST, internalName(wrapper))
+                   .invoke(INVOKEVIRTUAL, internalName(wrapper), type.getName() + "Value", "()" + descriptor(type), false);
+    }
+
+    private static Class<?> wrapper(Class<?> type) {
+        if(type == boolean.class) return Boolean.class;
+        if(type == byte.class) return Byte.class;
+        if(type == char.class) return Character.class;
+        if(type == short.class) return Short.class;
+        if(type == int.class) return Integer.class;
+        if(type == long.class) return Long.class;
+        if(type == float.class) return Float.class;
+        return Double.class;
+    }
+
+}
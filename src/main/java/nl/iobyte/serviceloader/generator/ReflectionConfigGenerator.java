@@ -0,0 +1,118 @@
+package nl.iobyte.serviceloader.generator;
+
+import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.interfaces.IService;
+import nl.iobyte.serviceloader.objects.ServiceContainer;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Writes GraalVM native-image reflect-config.json for the services of a loader, registering only the
+ * constructors, injected fields and invoked methods the loader uses
+ */
+public class ReflectionConfigGenerator {
+
+    /**
+     * Generate reflect-config.json content
+     * @param serviceLoader loader with registered services
+     * @return json
+     */
+    public static String generate(ServiceLoader serviceLoader) {
+        //Sorted, so the output only changes when the graph does
+        Map<String, Entry> entries = new TreeMap<>();
+        for(ServiceContainer<? extends IService> container : serviceLoader.getContainers()) {
+            Class<?> type = container.getType().getRawType();
+            if(container.getConstructor() != null)
+                entries.computeIfAbsent(type.getName(), Entry::new).methods.add(signature(
+                        "<init>",
+                        container.getConstructor().getParameterTypes()
+                ));
+
+            //Fields and methods are registered on the class declaring them
+            for(Field field : container.getInjectedFields())
+                entries.computeIfAbsent(field.getDeclaringClass().getName(), Entry::new).fields.put(
+                        field.getName(),
+                        Modifier.isFinal(field.getModifiers())
+                );
+
+            for(Method method : container.getInvokedMethods())
+                entries.computeIfAbsent(method.getDeclaringClass().getName(), Entry::new).methods.add(signature(
+                        method.getName(),
+                        method.getParameterTypes()
+                ));
+        }
+
+        return entries.values()
+                      .stream()
+                      .map(Entry::toJson)
+                      .collect(Collectors.joining(",\n", "[\n", entries.isEmpty() ? "]\n" : "\n]\n"));
+    }
+
+    /**
+     * Write reflect-config.json, creating parent directories
+     * @param serviceLoader loader with registered services
+     * @param path file to write
+     * @throws IOException if file can't be written
+     */
+    public static void write(ServiceLoader serviceLoader, Path path) throws IOException {
+        if(path.getParent() != null)
+            Files.createDirectories(path.getParent());
+
+        Files.writeString(path, generate(serviceLoader));
+    }
+
+    private static String signature(String name, Class<?>[] parameters) {
+        return "{\"name\": " + quote(name) + ", \"parameterTypes\": " + Arrays.stream(parameters)
+                                                                              .map(type -> quote(type.getTypeName()))
+                                                                              .collect(Collectors.joining(", ", "[", "]")) + "}";
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Members of one class
+     */
+    private static class Entry {
+
+        private final String name;
+        private final Map<String, Boolean> fields = new TreeMap<>();
+        private final TreeSet<String> methods = new TreeSet<>();
+
+        private Entry(String name) {
+            this.name = name;
+        }
+
+        private String toJson() {
+            StringBuilder builder = new StringBuilder("  {\n    \"name\": ").append(quote(name));
+            if(!methods.isEmpty())
+                builder.append(",\n    \"methods\": [\n      ")
+                       .append(String.join(",\n      ", methods))
+                       .append("\n    ]");
+
+            //Final fields are only injected by services not using constructor injection, and need write access
+            if(!fields.isEmpty())
+                builder.append(",\n    \"fields\": [\n      ")
+                       .append(fields.entrySet()
+                                     .stream()
+                                     .map(field -> "{\"name\": " + quote(field.getKey()) + (field.getValue() ? ", \"allowWrite\": true}" : "}"))
+                                     .collect(Collectors.joining(",\n      ")))
+                       .append("\n    ]");
+
+            return builder.append("\n  }").toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package nl.iobyte.serviceloader.interfaces;
+
+import nl.iobyte.serviceloader.ServiceLoader;
+
+public interface IInjector<T extends IService> {
+
+    /**
+     * Create new instance of service
+     * @param loader service loader to resolve dependencies from
+     * @return service instance
+     */
+    T create(ServiceLoader loader);
+
+    /**
+     * Inject dependencies into fields of service
+     * @param service service instance
+     * @param loader service loader to resolve dependencies from
+     */
+    void inject(T service, ServiceLoader loader);
+
+}
@@ -0,0 +1,13 @@
+package nl.iobyte.serviceloader.interfaces;
+
+import nl.iobyte.serviceloader.events.LifecycleEvent;
+
+public interface ILifecycleListener {
+
+    /**
+     * Handle lifecycle transition of a service, called on the dispatcher thread after the transition happened
+     * @param event lifecycle event
+     */
+    void onEvent(LifecycleEvent event);
+
+}
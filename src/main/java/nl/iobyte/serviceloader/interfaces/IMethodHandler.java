@@ -0,0 +1,13 @@
+package nl.iobyte.serviceloader.interfaces;
+
+public interface IMethodHandler {
+
+    /**
+     * Handle call of a proxied service method
+     * @param arguments array of arguments, primitives boxed
+     * @return result, boxed for primitive return types
+     * @throws Throwable exception to rethrow to the caller
+     */
+    Object invoke(Object[] arguments) throws Throwable;
+
+}
@@ -7,6 +7,11 @@ public interface IService {
      */
     default void start() {}
 
+    /**
+     * Warm up service after all services started
+     */
+    default void warmup() {}
+
     /**
      * Stop service
      */
@@ -0,0 +1,121 @@
+package nl.iobyte.serviceloader.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram, every power of two is split into 32 buckets keeping values within about 3%
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int SIZE = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Record value
+     * @param value value, negative values count as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Get amount of recorded values
+     * @return count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get sum of recorded values
+     * @return sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Get mean of recorded values
+     * @return mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * Get highest recorded value
+     * @return max
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get value below which the given percentage of recorded values fall
+     * @param percentile percentile between 0 and 100
+     * @return highest value equivalent to percentile, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[SIZE];
+        long total = 0;
+        for(int i = 0; i < SIZE; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if(total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for(int i = 0; i < SIZE; i++) {
+            seen += snapshot[i];
+            if(seen >= target)
+                return Math.min(upperBound(i), getMax());
+        }
+
+        return getMax();
+    }
+
+    private static int index(long value) {
+        if(value < SUB_COUNT << 1)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    private static long upperBound(int index) {
+        if(index < SUB_COUNT << 1)
+            return index;
+
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{" +
+                "count=" + getCount() +
+                ", mean=" + Math.round(getMean()) +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", max=" + getMax() +
+                '}';
+    }
+
+}
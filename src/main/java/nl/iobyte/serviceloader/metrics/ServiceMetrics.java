@@ -0,0 +1,100 @@
+package nl.iobyte.serviceloader.metrics;
+
+import nl.iobyte.serviceloader.generator.ProxyGenerator;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Latency histograms in nanoseconds per method of a service interface, kept across restarts of the service
+ */
+public class ServiceMetrics {
+
+    private final Class<?> type;
+    private final List<Method> methods;
+    private final Histogram[] histograms;
+
+    public ServiceMetrics(Class<?> type) {
+        this.type = type;
+        this.methods = ProxyGenerator.getMethods(type);
+        this.histograms = new Histogram[methods.size()];
+        for(int i = 0; i < histograms.length; i++)
+            histograms[i] = new Histogram();
+    }
+
+    /**
+     * Get service interface
+     * @return type
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Get measured methods, in the order of their histograms
+     * @return list of methods
+     */
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Get histograms, in the order of their methods
+     * @return array of histograms
+     */
+    public Histogram[] getHistograms() {
+        return histograms.clone();
+    }
+
+    /**
+     * Get histogram of method
+     * @param method measured method
+     * @return histogram, or null if method is not measured
+     */
+    public Histogram getHistogram(Method method) {
+        int index = methods.indexOf(method);
+        return index == -1 ? null : histograms[index];
+    }
+
+    /**
+     * Get histogram of first method with name
+     * @param name method name
+     * @return histogram, or null if no method has name
+     */
+    public Histogram getHistogram(String name) {
+        for(int i = 0; i < histograms.length; i++)
+            if(methods.get(i).getName().equals(name))
+                return histograms[i];
+
+        return null;
+    }
+
+    /**
+     * Get histograms by method signature
+     * @return map of signature to histogram
+     */
+    public Map<String, Histogram> toMap() {
+        Map<String, Histogram> map = new LinkedHashMap<>();
+        for(int i = 0; i < histograms.length; i++) {
+            Method method = methods.get(i);
+            map.put(method.getName() + Arrays.stream(method.getParameterTypes())
+                                              .map(Class::getSimpleName)
+                                              .collect(Collectors.joining(",", "(", ")")), histograms[i]);
+        }
+
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceMetrics{" +
+                "type=" + type.getSimpleName() +
+                ", methods=" + toMap() +
+                '}';
+    }
+
+}
@@ -1,27 +1,92 @@
 package nl.iobyte.serviceloader.objects;
 
 import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.annotations.Async;
+import nl.iobyte.serviceloader.annotations.Batched;
+import nl.iobyte.serviceloader.annotations.Cacheable;
 import nl.iobyte.serviceloader.annotations.Inject;
+import nl.iobyte.serviceloader.annotations.Scheduled;
+import nl.iobyte.serviceloader.annotations.Sharded;
+import nl.iobyte.serviceloader.annotations.Subscribe;
+import nl.iobyte.serviceloader.annotations.Tier;
+import nl.iobyte.serviceloader.async.AsyncMethod;
+import nl.iobyte.serviceloader.batch.BatchedMethod;
+import nl.iobyte.serviceloader.cache.CachedMethod;
+import nl.iobyte.serviceloader.enums.LifecycleEventType;
+import nl.iobyte.serviceloader.enums.LoaderOption;
 import nl.iobyte.serviceloader.enums.ServiceState;
+import nl.iobyte.serviceloader.events.Subscriber;
+import nl.iobyte.serviceloader.generator.InjectorGenerator;
+import nl.iobyte.serviceloader.generator.ProxyGenerator;
+import nl.iobyte.serviceloader.interfaces.IInjector;
+import nl.iobyte.serviceloader.interfaces.IMethodHandler;
 import nl.iobyte.serviceloader.interfaces.IService;
+import nl.iobyte.serviceloader.metrics.ServiceMetrics;
 import nl.iobyte.serviceloader.reflections.ReflectionType;
+import nl.iobyte.serviceloader.reflections.invokers.ClassInvoker;
 import nl.iobyte.serviceloader.reflections.invokers.FieldInvoker;
+import nl.iobyte.serviceloader.reflections.invokers.MethodInvoker;
+import nl.iobyte.serviceloader.scheduler.ScheduledTask;
+import nl.iobyte.serviceloader.scheduler.TimingWheel;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class ServiceContainer<T extends IService> {
 
     private final ReflectionType<T> type;
+    private final Class<?> serviceType;
     private final ServiceLoader serviceLoader;
     private final List<FieldInvoker<IService>> dependencyFields = new ArrayList<>();
+    private final Map<FieldInvoker<Object>, Class<?>> bindingFields = new LinkedHashMap<>();
+    private final List<MethodInvoker<?>> subscriberMethods = new ArrayList<>();
+    private final List<MethodInvoker<?>> scheduledMethods = new ArrayList<>();
+    private final Map<Method, Cacheable> cacheableMethods = new LinkedHashMap<>();
+    private final Map<Method, Async> asyncMethods = new LinkedHashMap<>();
+    private final Map<Method, Batched> batchedMethods = new LinkedHashMap<>();
+    private final List<ScheduledTask> tasks = new CopyOnWriteArrayList<>();
+    private final ClassInvoker<T> constructor;
+    private final int shardCount;
+    private volatile int tier;
+    private volatile Shards<T> shards;
+    private volatile IService proxy;
+    private volatile Map<Method, CachedMethod> caches = Map.of();
+    private volatile List<BatchedMethod> batchers = List.of();
+    private volatile IInjector<T> injector;
     private final AtomicReference<T> instance = new AtomicReference<>(null);
     private final AtomicReference<ServiceState> state = new AtomicReference<>(ServiceState.NONE);
+    private volatile Throwable failure;
+
+    //Serializes lifecycle transitions, so a transition never observes another one halfway
+    private final ReentrantLock lifecycle = new ReentrantLock();
 
     public ServiceContainer(ReflectionType<T> type, ServiceLoader serviceLoader) {
+        this(type, type.getRawType(), serviceLoader);
+    }
+
+    public ServiceContainer(ReflectionType<T> type, Class<?> serviceType, ServiceLoader serviceLoader) {
         this.type = type;
+        this.serviceType = serviceType;
         this.serviceLoader = serviceLoader;
 
         type.getGlobalFields().stream()
@@ -29,6 +94,119 @@ public class ServiceContainer<T extends IService> {
             .filter(field -> IService.class.isAssignableFrom(field.getField().getType()))
             .map(field -> field.cast(IService.class))
             .forEach(dependencyFields::add);
+
+        type.getGlobalFields().stream()
+            .filter(field -> field.hasAnnotation(Inject.class))
+            .forEach(field -> {
+                Class<?> binding = getBindingType(field.getField());
+                if(binding != null)
+                    bindingFields.put(field, binding);
+            });
+
+        //Own methods come first, so overridden subscribers are only delivered once
+        Set<String> signatures = new HashSet<>();
+        List<MethodInvoker<?>> methods = type.getGlobalMethods().stream()
+            .filter(method -> signatures.add(method.getName() + Arrays.toString(method.getParameterTypes())))
+            .toList();
+
+        methods.stream()
+            .filter(method -> method.hasAnnotation(Subscribe.class))
+            .peek(method -> Subscriber.validate(method.getMethod()))
+            .forEach(subscriberMethods::add);
+
+        methods.stream()
+            .filter(method -> method.hasAnnotation(Scheduled.class))
+            .peek(method -> TimingWheel.validate(method.getMethod()))
+            .forEach(scheduledMethods::add);
+
+        //Cacheable, async and batched methods are handled by a proxy of the service interface
+        methods.stream()
+            .filter(method -> method.hasAnnotation(Cacheable.class))
+            .forEach(method -> cacheableMethods.put(getInterfaceMethod(method.getMethod(), "cacheable"), method.getAnnotation(Cacheable.class)));
+
+        methods.stream()
+            .filter(method -> method.hasAnnotation(Async.class))
+            .forEach(method -> asyncMethods.put(getInterfaceMethod(method.getMethod(), "async"), method.getAnnotation(Async.class)));
+
+        methods.stream()
+            .filter(method -> method.hasAnnotation(Batched.class))
+            .forEach(method -> batchedMethods.put(getInterfaceMethod(method.getMethod(), "batched"), method.getAnnotation(Batched.class)));
+
+        Async async = type.getRawType().getAnnotation(Async.class);
+        if(async != null && !serviceType.isInterface())
+            throw new IllegalStateException("async service "+type.getName()+" must be bound to an interface");
+
+        if(serviceType.isInterface()) {
+            for(Method method : ProxyGenerator.getMethods(serviceType)) {
+                if(method.isAnnotationPresent(Cacheable.class))
+                    cacheableMethods.putIfAbsent(method, method.getAnnotation(Cacheable.class));
+
+                if(method.isAnnotationPresent(Async.class))
+                    asyncMethods.putIfAbsent(method, method.getAnnotation(Async.class));
+
+                if(method.isAnnotationPresent(Batched.class))
+                    batchedMethods.putIfAbsent(method, method.getAnnotation(Batched.class));
+            }
+
+            //Annotation on type covers every other method returning a future
+            if(async != null)
+                ProxyGenerator.getMethods(serviceType).stream()
+                    .filter(AsyncMethod::validate)
+                    .filter(method -> !cacheableMethods.containsKey(method) && !batchedMethods.containsKey(method))
+                    .forEach(method -> asyncMethods.putIfAbsent(method, async));
+        }
+
+        cacheableMethods.keySet().forEach(method -> {
+            if(method.getReturnType() == void.class)
+                throw new IllegalStateException("cacheable method "+method.getName()+" can't return void");
+
+            if(asyncMethods.containsKey(method) || batchedMethods.containsKey(method))
+                throw new IllegalStateException("method "+method.getName()+" can only be one of cacheable, async or batched");
+        });
+
+        batchedMethods.forEach((method, batched) -> {
+            if(asyncMethods.containsKey(method))
+                throw new IllegalStateException("method "+method.getName()+" can only be one of cacheable, async or batched");
+
+            BatchedMethod.validate(method, batched);
+        });
+
+        asyncMethods.keySet().forEach(method -> {
+            if(!AsyncMethod.validate(method))
+                throw new IllegalStateException("async method "+method.getName()+" must return CompletableFuture");
+        });
+
+        constructor = type.getConstructors().stream().reduce((a,b) -> {
+            if(a.getParameterTypes().length > b.getParameterTypes().length)
+                return a;
+
+            return b;
+        }).orElse(null);
+
+        if(serviceLoader.hasOption(LoaderOption.CONSTRUCTOR_INJECTION))
+            validateConstructorInjection();
+
+        Tier annotation = type.getRawType().getAnnotation(Tier.class);
+        if(annotation != null) {
+            if(annotation.value() < 0)
+                throw new IllegalArgumentException("tier of service "+type.getName()+" can't be negative");
+
+            tier = annotation.value();
+        }
+
+        Sharded sharded = type.getRawType().getAnnotation(Sharded.class);
+        if(sharded == null) {
+            shardCount = 0;
+            return;
+        }
+
+        if(!serviceType.isInterface())
+            throw new IllegalStateException("sharded service "+type.getName()+" must be bound to an interface");
+
+        if(!subscriberMethods.isEmpty() || !scheduledMethods.isEmpty())
+            throw new IllegalStateException("sharded service "+type.getName()+" can't have subscriber or scheduled methods");
+
+        shardCount = sharded.value() > 0 ? sharded.value() : Runtime.getRuntime().availableProcessors();
     }
 
     /**
@@ -40,13 +218,127 @@ public class ServiceContainer<T extends IService> {
     }
 
     /**
-     * Get service instance
+     * Get type service is registered as
+     * @return service type
+     */
+    public Class<?> getServiceType() {
+        return serviceType;
+    }
+
+    /**
+     * Get service instance, the first shard of a sharded service
      * @return instance of service
      */
     public T getInstance() {
         return instance.get();
     }
 
+    /**
+     * Get instance to resolve and inject, a proxy for sharded or measured services
+     * @return service or proxy
+     */
+    public IService getService() {
+        IService routed = proxy;
+        return routed != null ? routed : instance.get();
+    }
+
+    /**
+     * Get shards of sharded service
+     * @return shards, or null if service is not sharded or not initialized
+     */
+    public Shards<T> getShards() {
+        return shards;
+    }
+
+    /**
+     * Get state of container
+     * @return state
+     */
+    public ServiceState getState() {
+        return state.get();
+    }
+
+    /**
+     * Get cause of failure
+     * @return cause, or null if container did not fail
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Get caches of cacheable methods
+     * @return map of interface method to cache, empty if service is not initialized
+     */
+    public Map<Method, CachedMethod> getCaches() {
+        return caches;
+    }
+
+    /**
+     * Get startup tier, 0 unless set by annotation or registration
+     * @return tier
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * Set startup tier, overriding the annotation
+     * @param tier tier, 0 for services started before the loader returns from start
+     */
+    public void setTier(int tier) {
+        if(tier < 0)
+            throw new IllegalArgumentException("tier of service "+type.getName()+" can't be negative");
+
+        this.tier = tier;
+    }
+
+    /**
+     * Get generated injector creating and injecting service
+     * @return injector, or null if service is created and injected through reflection
+     */
+    public IInjector<T> getInjector() {
+        return injector;
+    }
+
+    /**
+     * Get constructor used to create service
+     * @return constructor, or null if service has no public constructor
+     */
+    public ClassInvoker<T> getConstructor() {
+        return constructor;
+    }
+
+    /**
+     * Get fields injected with a dependency or multi-binding
+     * @return list of fields
+     */
+    public List<Field> getInjectedFields() {
+        List<Field> list = new ArrayList<>();
+        dependencyFields.forEach(field -> list.add(field.getField()));
+        bindingFields.keySet().forEach(field -> list.add(field.getField()));
+        return list;
+    }
+
+    /**
+     * Get element types of multi-binding fields
+     * @return collection of types
+     */
+    public Collection<Class<?>> getBindingTypes() {
+        return bindingFields.values();
+    }
+
+    /**
+     * Get subscriber and scheduled methods invoked through reflection
+     * @return list of methods
+     */
+    public List<Method> getInvokedMethods() {
+        List<Method> list = new ArrayList<>();
+        subscriberMethods.forEach(method -> list.add(method.getMethod()));
+        scheduledMethods.forEach(method -> list.add(method.getMethod()));
+        return list;
+    }
+
     /**
      * Get list of dependencies
      * @return list of service types
@@ -54,20 +346,15 @@ public class ServiceContainer<T extends IService> {
     public List<Class<? extends IService>> getDependencies() {
         List<Class<? extends IService>> list = new ArrayList<>();
         dependencyFields.forEach(field -> list.add(field.getField().getType().asSubclass(IService.class)));
+        if(constructor == null)
+            return list;
 
-        type.getConstructors().stream().reduce((a,b) -> {
-            if(a.getParameterTypes().length > b.getParameterTypes().length)
-                return a;
-
-            return b;
-        }).ifPresent(invoker -> {
-           for(Class<?> parameter : invoker.getParameterTypes()) {
-               if(!IService.class.isAssignableFrom(parameter))
-                   throw new IllegalStateException("parameter type "+parameter.getSimpleName()+" is not allowed in service constructor");
+        for(Class<?> parameter : constructor.getParameterTypes()) {
+            if(!IService.class.isAssignableFrom(parameter))
+                throw new IllegalStateException("parameter type "+parameter.getSimpleName()+" is not allowed in service constructor");
 
-               list.add(parameter.asSubclass(IService.class));
-           }
-        });
+            list.add(parameter.asSubclass(IService.class));
+        }
 
         return list;
     }
@@ -77,6 +364,12 @@ public class ServiceContainer<T extends IService> {
      * @param service instance of service
      */
     public void resolveDependencies(T service) {
+        IInjector<T> generated = injector;
+        if(generated != null) {
+            generated.inject(service, serviceLoader);
+            return;
+        }
+
         IService value;
         for(FieldInvoker<IService> invoker : dependencyFields) {
             //Resolve service
@@ -93,69 +386,351 @@ public class ServiceContainer<T extends IService> {
             //Inject dependency
             invoker.set(service, value);
         }
+
+        for(Map.Entry<FieldInvoker<Object>, Class<?>> entry : bindingFields.entrySet()) {
+            //Inject as array or list
+            entry.getKey().set(service, InjectorGenerator.bind(
+                    serviceLoader,
+                    entry.getValue(),
+                    entry.getKey().getField().getType()
+            ));
+        }
+    }
+
+    /**
+     * Inject fresh collections into multi-binding fields of initialized service,
+     * bindings are no dependencies so they are refreshed whenever the services bound change
+     */
+    public void refreshBindings() {
+        T obj = instance.get();
+        if(obj == null || bindingFields.isEmpty() || !state.get().hasInit())
+            return;
+
+        forEachInstance(obj, service -> bindingFields.forEach((invoker, binding) -> invoker.set(service, InjectorGenerator.bind(
+                serviceLoader,
+                binding,
+                invoker.getField().getType()
+        ))));
+    }
+
+    /**
+     * Check service receives all dependencies through the single constructor that is selected
+     */
+    private void validateConstructorInjection() {
+        type.getGlobalFields().stream()
+            .filter(field -> field.hasAnnotation(Inject.class))
+            .findFirst()
+            .ifPresent(field -> {
+                throw new IllegalStateException("field "+field.getName()+" of service "+type.getName()+" is injected, only constructor injection is allowed");
+            });
+
+        if(constructor == null)
+            throw new IllegalStateException("service "+type.getName()+" has no public constructor");
+
+        long candidates = type.getConstructors().stream()
+            .filter(invoker -> invoker.getParameterTypes().length == constructor.getParameterTypes().length)
+            .count();
+        if(candidates > 1)
+            throw new IllegalStateException("service "+type.getName()+" has multiple public constructors with "+constructor.getParameterTypes().length+" parameters");
+    }
+
+    /**
+     * Get method of service interface implemented by method
+     * @param method implementation method
+     * @param kind kind of annotated method, for error messages
+     * @return interface method
+     */
+    private Method getInterfaceMethod(Method method, String kind) {
+        if(!serviceType.isInterface())
+            throw new IllegalStateException(kind+" method "+method.getName()+" requires service "+type.getName()+" to be bound to an interface");
+
+        try {
+            return serviceType.getMethod(method.getName(), method.getParameterTypes());
+        } catch(NoSuchMethodException e) {
+            throw new IllegalStateException(kind+" method "+method.getName()+" is not declared by "+serviceType.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Get element type of a multi-binding field
+     * @param field List, Collection, Iterable or array field
+     * @return element type, or null if field is not a multi-binding
+     */
+    private static Class<?> getBindingType(Field field) {
+        Class<?> fieldType = field.getType();
+        if(fieldType.isArray())
+            return fieldType.getComponentType().isPrimitive() ? null : fieldType.getComponentType();
+
+        if(!fieldType.isAssignableFrom(List.class))
+            return null;
+
+        if(!(field.getGenericType() instanceof ParameterizedType parameterized))
+            return null;
+
+        Type argument = parameterized.getActualTypeArguments()[0];
+        if(argument instanceof WildcardType wildcard)
+            argument = wildcard.getUpperBounds()[0];
+
+        if(argument instanceof ParameterizedType raw)
+            argument = raw.getRawType();
+
+        return argument instanceof Class<?> cls ? cls : null;
     }
 
     /**
      * Initialize service
      */
     public void init() {
-        if(!state.compareAndSet(ServiceState.NONE, ServiceState.INIT))
-            return;
+        lifecycle.lock();
+        try {
+            if(!state.compareAndSet(ServiceState.NONE, ServiceState.INIT))
+                return;
 
-        type.getConstructors().stream().reduce((a,b) -> {
-            if(a.getParameterTypes().length > b.getParameterTypes().length)
-                return a;
+            if(constructor == null)
+                return;
 
-            return b;
-        }).ifPresent(invoker -> {
-            T obj;
-            if(invoker.hasParameters()) {
-                Object[] array = new Object[invoker.getParameterTypes().length];
-                for(int i = 0; i < array.length; i++) {
-                    array[i] = serviceLoader.resolve(invoker.getParameterTypes()[i].asSubclass(IService.class));
-                    if(array[i] == null)
-                        throw new IllegalStateException("unable to resolve service "+invoker.getParameterTypes()[i].getSimpleName());
-                }
-
-                obj = invoker.newInstance(array);
+            IService target;
+            if(shardCount == 0) {
+                T obj = create();
+                instance.compareAndSet(null, obj);
+                target = obj;
             } else {
-                obj = invoker.newInstance();
+                List<T> list = new ArrayList<>(shardCount);
+                for(int i = 0; i < shardCount; i++)
+                    list.add(create());
+
+                Shards<T> created = new Shards<>(list);
+                shards = created;
+                target = (IService) ProxyGenerator.shards(serviceType, created);
+                instance.compareAndSet(null, list.get(0));
             }
 
-            if(obj == null)
-                throw new IllegalStateException("unable get new instance of service "+type.getName());
+            if(!cacheableMethods.isEmpty() || !asyncMethods.isEmpty() || !batchedMethods.isEmpty())
+                target = handle(target);
 
-            instance.compareAndSet(null, obj);
-        });
+            ServiceMetrics metrics = serviceLoader.getMetrics(serviceType);
+            if(metrics != null)
+                target = (IService) ProxyGenerator.timing(serviceType, target, metrics);
+
+            if(target != instance.get())
+                proxy = target;
+
+            serviceLoader.getLifecycleDispatcher().publish(LifecycleEventType.INITIALIZED, serviceType, null);
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Wrap target in proxy passing cacheable, async and batched methods to their handler
+     * @param target instance or proxy to delegate to
+     * @return proxy
+     */
+    private IService handle(IService target) {
+        List<Method> methods = ProxyGenerator.getMethods(serviceType);
+        IMethodHandler[] handlers = new IMethodHandler[methods.size()];
+        Map<Method, CachedMethod> created = new LinkedHashMap<>();
+        List<BatchedMethod> batching = new ArrayList<>();
+        Map<Async, Semaphore> limits = new IdentityHashMap<>();
+        for(int i = 0; i < handlers.length; i++) {
+            Method method = methods.get(i);
+            Cacheable cacheable = cacheableMethods.get(method);
+            if(cacheable != null) {
+                CachedMethod cache = new CachedMethod(method, target, cacheable);
+                created.put(method, cache);
+                handlers[i] = cache;
+                continue;
+            }
+
+            Batched batched = batchedMethods.get(method);
+            if(batched != null) {
+                BatchedMethod batcher = new BatchedMethod(method, target, batched, serviceLoader.getScheduler(), serviceLoader.getExecutor());
+                batching.add(batcher);
+                handlers[i] = batcher;
+                continue;
+            }
+
+            //Methods covered by the same annotation share its limit
+            Async async = asyncMethods.get(method);
+            if(async != null)
+                handlers[i] = new AsyncMethod(
+                        method,
+                        target,
+                        serviceLoader.getExecutor(),
+                        async.concurrency() > 0 ? limits.computeIfAbsent(async, key -> new Semaphore(key.concurrency())) : null
+                );
+        }
+
+        caches = Collections.unmodifiableMap(created);
+        batchers = List.copyOf(batching);
+        return (IService) ProxyGenerator.handlers(serviceType, target, handlers);
+    }
+
+    /**
+     * Create new instance of service
+     * @return instance
+     */
+    private T create() {
+        if(serviceLoader.hasOption(LoaderOption.GENERATED_INJECTORS) && injector == null)
+            injector = InjectorGenerator.generate(
+                    type.getRawType(),
+                    constructor.getParameterTypes(),
+                    dependencyFields.stream().map(FieldInvoker::getField).toList(),
+                    bindingFields.entrySet().stream().collect(Collectors.toMap(
+                            entry -> entry.getKey().getField(),
+                            Map.Entry::getValue,
+                            (a, b) -> a,
+                            LinkedHashMap::new
+                    ))
+            );
+
+        T obj;
+        IInjector<T> generated = injector;
+        if(generated != null) {
+            obj = generated.create(serviceLoader);
+        } else if(constructor.hasParameters()) {
+            Object[] array = new Object[constructor.getParameterTypes().length];
+            for(int i = 0; i < array.length; i++) {
+                array[i] = serviceLoader.resolve(constructor.getParameterTypes()[i].asSubclass(IService.class));
+                if(array[i] == null)
+                    throw new IllegalStateException("unable to resolve service "+constructor.getParameterTypes()[i].getSimpleName());
+            }
+
+            obj = constructor.newInstance(array);
+        } else {
+            obj = constructor.newInstance();
+        }
+
+        if(obj == null)
+            throw new IllegalStateException("unable get new instance of service "+type.getName());
+
+        return obj;
     }
 
     /**
      * Start container
      */
     public void start() {
+        lifecycle.lock();
+        try {
+            T obj = instance.get();
+            if(obj == null)
+                return;
+
+            if(!state.compareAndSet(ServiceState.INIT, ServiceState.START))
+                return;
+
+            forEachInstance(obj, service -> {
+                resolveDependencies(service);
+                service.start();
+            });
+            serviceLoader.getEventBus().subscribe(obj, subscriberMethods);
+            scheduledMethods.forEach(method -> tasks.add(serviceLoader.getScheduler().schedule(obj, method.getMethod())));
+            serviceLoader.getLifecycleDispatcher().publish(LifecycleEventType.STARTED, serviceType, null);
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Warm up container
+     */
+    public void warmup() {
         T obj = instance.get();
         if(obj == null)
             return;
 
-        if(!state.compareAndSet(ServiceState.INIT, ServiceState.START))
+        if(!state.compareAndSet(ServiceState.START, ServiceState.READY))
             return;
 
-        resolveDependencies(obj);
-        obj.start();
+        forEachInstance(obj, IService::warmup);
     }
 
     /**
      * Stop container
      */
     public void stop() {
-        T obj = instance.getAndSet(null);
-        if(obj == null)
-            return;
+        lifecycle.lock();
+        try {
+            //A container stopped before init stays stopped, so a registration racing a stop can't bring it up afterwards
+            ServiceState previous;
+            do {
+                previous = state.get();
+                if(previous == ServiceState.STOP || previous == ServiceState.FAILED)
+                    return;
+            } while(!state.compareAndSet(previous, ServiceState.STOP));
 
-        if(!state.compareAndSet(ServiceState.START, ServiceState.STOP))
+            if(previous == ServiceState.NONE)
+                return;
+
+            //Answer calls still waiting for their batch while the service is running
+            batchers.forEach(BatchedMethod::flush);
+            batchers = List.of();
+
+            Shards<T> stopped = shards;
+            T obj = instance.getAndSet(null);
+            proxy = null;
+            shards = null;
+            caches = Map.of();
+            if(obj == null || !previous.hasStart()) {
+                serviceLoader.getLifecycleDispatcher().publish(LifecycleEventType.STOPPED, serviceType, null);
+                return;
+            }
+
+            serviceLoader.getEventBus().unsubscribe(obj);
+            tasks.forEach(ScheduledTask::cancel);
+            tasks.clear();
+            if(stopped != null) {
+                stopped.getAll().forEach(IService::stop);
+            } else {
+                obj.stop();
+            }
+
+            serviceLoader.getLifecycleDispatcher().publish(LifecycleEventType.STOPPED, serviceType, null);
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Mark container as failed, releasing a partially started instance
+     * @param cause failure cause
+     */
+    public void fail(Throwable cause) {
+        lifecycle.lock();
+        try {
+            failure = cause;
+            state.set(ServiceState.FAILED);
+            serviceLoader.getLifecycleDispatcher().publish(LifecycleEventType.FAILED, serviceType, cause);
+
+            T obj = instance.getAndSet(null);
+            proxy = null;
+            shards = null;
+            caches = Map.of();
+            if(obj == null)
+                return;
+
+            serviceLoader.getEventBus().unsubscribe(obj);
+            tasks.forEach(ScheduledTask::cancel);
+            tasks.clear();
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Run action on instance, or on every shard of a sharded service
+     * @param obj instance
+     * @param action action to run
+     */
+    private void forEachInstance(T obj, Consumer<T> action) {
+        Shards<T> current = shards;
+        if(current == null) {
+            action.accept(obj);
             return;
+        }
 
-        obj.stop();
+        current.getAll().forEach(action);
     }
 
 }
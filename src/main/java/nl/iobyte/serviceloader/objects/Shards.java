@@ -0,0 +1,63 @@
+package nl.iobyte.serviceloader.objects;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Instances of a sharded service, each thread is routed to the same shard for its lifetime
+ */
+public class Shards<T> {
+
+    private final List<T> instances;
+
+    public Shards(List<T> instances) {
+        if(instances.isEmpty())
+            throw new IllegalArgumentException("shards can't be empty");
+
+        this.instances = List.copyOf(instances);
+    }
+
+    /**
+     * Get shard of current thread
+     * @return instance
+     */
+    public T get() {
+        //Spread sequential thread ids over shards
+        long hash = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return instances.get((int) ((hash >>> 32) % instances.size()));
+    }
+
+    /**
+     * Get shard at index
+     * @param index shard index
+     * @return instance
+     */
+    public T get(int index) {
+        return instances.get(index);
+    }
+
+    /**
+     * Get amount of shards
+     * @return amount
+     */
+    public int size() {
+        return instances.size();
+    }
+
+    /**
+     * Get all shards, for combining their state into an aggregate view
+     * @return immutable list of instances
+     */
+    public List<T> getAll() {
+        return instances;
+    }
+
+    /**
+     * Stream all shards
+     * @return stream of instances
+     */
+    public Stream<T> stream() {
+        return instances.stream();
+    }
+
+}
@@ -0,0 +1,153 @@
+package nl.iobyte.serviceloader.objects;
+
+import nl.iobyte.serviceloader.interfaces.IService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Progress of services in deferred tiers, started in the background after the loader returned from start.
+ * Updated by the loader while it works through the tiers, read by anyone reporting on startup.
+ */
+public class StartupProgress {
+
+    private final List<Class<? extends IService>> deferred;
+    private final Set<Class<? extends IService>> types;
+    private final Set<Class<? extends IService>> started = ConcurrentHashMap.newKeySet();
+    private final Map<Class<? extends IService>, Throwable> failed = new ConcurrentHashMap<>();
+    private final CompletableFuture<StartupProgress> completion = new CompletableFuture<>();
+    private volatile int tier;
+
+    /**
+     * @param deferred services to start in the background, in the order they are started
+     */
+    public StartupProgress(List<Class<? extends IService>> deferred) {
+        this.deferred = new CopyOnWriteArrayList<>(deferred);
+        this.types = ConcurrentHashMap.newKeySet();
+        this.types.addAll(deferred);
+    }
+
+    /**
+     * Get services started in the background, in the order they are started
+     * @return unmodifiable list of service types
+     */
+    public List<Class<? extends IService>> getDeferred() {
+        return Collections.unmodifiableList(deferred);
+    }
+
+    /**
+     * Check if service is started in the background
+     * @param type service type
+     * @return is deferred
+     */
+    public boolean isDeferred(Class<?> type) {
+        return types.contains(type);
+    }
+
+    /**
+     * Get amount of services started in the background
+     * @return amount of services
+     */
+    public int getTotal() {
+        return deferred.size();
+    }
+
+    /**
+     * Get amount of deferred services that started
+     * @return amount of services
+     */
+    public int getStarted() {
+        return started.size();
+    }
+
+    /**
+     * Get deferred services that failed, either themselves or through a dependency
+     * @return unmodifiable map of service type to cause
+     */
+    public Map<Class<? extends IService>, Throwable> getFailed() {
+        return Collections.unmodifiableMap(failed);
+    }
+
+    /**
+     * Get tier currently being started
+     * @return tier, or the last tier once done
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * Check if every deferred service started or failed, or the loader stopped before they did
+     * @return is done
+     */
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Get future completing when deferred startup is done
+     * @return future of this progress
+     */
+    public CompletableFuture<StartupProgress> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Mark start of tier
+     * @param tier tier
+     */
+    public void setTier(int tier) {
+        this.tier = tier;
+    }
+
+    /**
+     * Mark service as started
+     * @param type service type
+     */
+    public void markStarted(Class<? extends IService> type) {
+        started.add(type);
+    }
+
+    /**
+     * Mark service as failed
+     * @param type service type
+     * @param cause failure cause
+     */
+    public void markFailed(Class<? extends IService> type, Throwable cause) {
+        failed.put(type, cause);
+    }
+
+    /**
+     * Stop tracking service, dropping every reference to its type
+     * @param type service type
+     */
+    public void remove(Class<?> type) {
+        deferred.remove(type);
+        types.remove(type);
+        started.remove(type);
+        failed.remove(type);
+    }
+
+    /**
+     * Mark deferred startup as done
+     */
+    public void complete() {
+        completion.complete(this);
+    }
+
+    @Override
+    public String toString() {
+        return "StartupProgress{" +
+                "tier=" + tier +
+                ", started=" + started.size() + "/" + deferred.size() +
+                ", failed=" + failed.keySet() +
+                ", done=" + isDone() +
+                '}';
+    }
+
+}
@@ -0,0 +1,76 @@
+package nl.iobyte.serviceloader.objects;
+
+import nl.iobyte.serviceloader.interfaces.IService;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of starting services in isolation, a failed service fails its dependents without stopping the others
+ */
+public class StartupResult {
+
+    private final List<Class<? extends IService>> started;
+    private final Map<Class<? extends IService>, Throwable> failed;
+    private final Duration duration;
+
+    public StartupResult(List<Class<? extends IService>> started, Map<Class<? extends IService>, Throwable> failed, Duration duration) {
+        this.started = List.copyOf(started);
+        this.failed = Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+        this.duration = duration;
+    }
+
+    /**
+     * Get services that started, in dependency order
+     * @return list of service types
+     */
+    public List<Class<? extends IService>> getStarted() {
+        return started;
+    }
+
+    /**
+     * Get services that failed, either themselves or through a dependency, in dependency order
+     * @return map of service type to cause
+     */
+    public Map<Class<? extends IService>, Throwable> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Get cause of failed service
+     * @param type service type
+     * @return cause, or null if service did not fail
+     */
+    public Throwable getCause(Class<? extends IService> type) {
+        return failed.get(type);
+    }
+
+    /**
+     * Get time spent initializing and starting services
+     * @return duration
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Check if any service failed
+     * @return is degraded
+     */
+    public boolean isDegraded() {
+        return !failed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "StartupResult{" +
+                "started=" + started.size() +
+                ", failed=" + failed.keySet() +
+                ", duration=" + duration +
+                '}';
+    }
+
+}
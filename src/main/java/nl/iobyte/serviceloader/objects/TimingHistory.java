@@ -0,0 +1,147 @@
+package nl.iobyte.serviceloader.objects;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Init and start durations of services measured on earlier boots, kept in a small text file with a line per service.
+ * New measurements are averaged with the stored ones, so a single slow boot doesn't reorder everything.
+ */
+public class TimingHistory {
+
+    private final Path path;
+    private final Map<String, long[]> durations = new ConcurrentHashMap<>();
+
+    /**
+     * @param path file to load from and save to, read if it exists
+     * @throws IOException if existing file can't be read
+     */
+    public TimingHistory(Path path) throws IOException {
+        this.path = path;
+        if(!Files.exists(path))
+            return;
+
+        for(String line : Files.readAllLines(path)) {
+            String[] parts = line.trim().split(" ");
+            if(parts.length != 3 || parts[0].startsWith("#"))
+                continue;
+
+            try {
+                durations.put(parts[0], new long[]{Long.parseLong(parts[1]), Long.parseLong(parts[2])});
+            } catch(NumberFormatException ignored) {
+                //Skip damaged lines, they are measured again
+            }
+        }
+    }
+
+    /**
+     * Get file history is kept in
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Record measured durations of service
+     * @param type service type
+     * @param init nanoseconds taken by init
+     * @param start nanoseconds taken by start
+     */
+    public void record(Class<?> type, long init, long start) {
+        durations.merge(type.getName(), new long[]{init, start}, (previous, measured) -> new long[]{
+                (previous[0] + measured[0]) / 2,
+                (previous[1] + measured[1]) / 2
+        });
+    }
+
+    /**
+     * Get recorded init duration
+     * @param type service type
+     * @return nanoseconds, or -1 if never measured
+     */
+    public long getInit(Class<?> type) {
+        long[] measured = durations.get(type.getName());
+        return measured == null ? -1 : measured[0];
+    }
+
+    /**
+     * Get recorded start duration
+     * @param type service type
+     * @return nanoseconds, or -1 if never measured
+     */
+    public long getStart(Class<?> type) {
+        long[] measured = durations.get(type.getName());
+        return measured == null ? -1 : measured[1];
+    }
+
+    /**
+     * Get expected cost of bringing service up, services never measured cost the average of those that were
+     * @param type service type
+     * @return nanoseconds
+     */
+    public long getCost(Class<?> type) {
+        long[] measured = durations.get(type.getName());
+        if(measured != null)
+            return measured[0] + measured[1];
+
+        return getAverageCost();
+    }
+
+    /**
+     * Get expected cost of bringing service up
+     * @param type service type
+     * @param fallback nanoseconds of a service never measured, see {@link #getAverageCost()}
+     * @return nanoseconds
+     */
+    public long getCost(Class<?> type, long fallback) {
+        long[] measured = durations.get(type.getName());
+        return measured == null ? fallback : measured[0] + measured[1];
+    }
+
+    /**
+     * Get average cost of bringing up the services that were measured
+     * @return nanoseconds, or 1 if none were
+     */
+    public long getAverageCost() {
+        return (long) durations.values()
+                               .stream()
+                               .mapToLong(value -> value[0] + value[1])
+                               .average()
+                               .orElse(1);
+    }
+
+    /**
+     * Write history to its file, replacing the previous one at once
+     * @throws IOException if file can't be written
+     */
+    public void save() throws IOException {
+        List<String> lines = durations.entrySet()
+                                      .stream()
+                                      .sorted(Map.Entry.comparingByKey())
+                                      .map(entry -> entry.getKey() + " " + entry.getValue()[0] + " " + entry.getValue()[1])
+                                      .collect(Collectors.toList());
+        lines.add(0, "# service init-nanos start-nanos");
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        Files.write(temporary, lines);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String toString() {
+        return "TimingHistory{" +
+                "path=" + path +
+                ", services=" + durations.size() +
+                '}';
+    }
+
+}
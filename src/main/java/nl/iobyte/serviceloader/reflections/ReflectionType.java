@@ -13,12 +13,21 @@ import java.util.function.Predicate;
 
 public class ReflectionType<T> {
 
+    private static final ClassValue<ReflectionType<?>> CACHE = new ClassValue<>() {
+        @Override
+        protected ReflectionType<?> computeValue(Class<?> type) {
+            return new ReflectionType<>(type);
+        }
+    };
+
     private final Class<T> type;
+    private final List<ClassInvoker<T>> constructors;
     private final List<FieldInvoker<Object>> ownFields, globalFields;
     private final List<MethodInvoker<?>> ownMethods, globalMethods;
 
     public ReflectionType(Class<T> type) {
         this.type = type;
+        this.constructors = ReflectionConstructor.getConstructors(type);
 
         this.ownFields = ReflectionField.getOwnFields(type);
         this.globalFields = ReflectionField.getGlobalFields(type);
@@ -74,7 +83,7 @@ public class ReflectionType<T> {
      * @return list of constructors
      */
     public List<ClassInvoker<T>> getConstructors() {
-        return ReflectionConstructor.getConstructors(type);
+        return constructors;
     }
 
     /**
@@ -237,13 +246,16 @@ public class ReflectionType<T> {
     }
 
     /**
-     * Get reflection type instance from type
+     * Get reflection type instance from type, built once per class and shared by every loader
      * @param type class type
      * @return reflection type instance
      * @param <T> type
      */
     public static <T> ReflectionType<T> of(Class<T> type) {
-        return new ReflectionType<>(type);
+        //The cache computes the entry of a class from that same class, so it is a reflection type of T
+        @SuppressWarnings("unchecked")
+        ReflectionType<T> reflectionType = (ReflectionType<T>) CACHE.get(type);
+        return reflectionType;
     }
 
 }
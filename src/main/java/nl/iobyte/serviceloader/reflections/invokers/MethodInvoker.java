@@ -1,5 +1,6 @@
 package nl.iobyte.serviceloader.reflections.invokers;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 
 public class MethodInvoker<T> {
@@ -24,6 +25,33 @@ public class MethodInvoker<T> {
         return method.getName();
     }
 
+    /**
+     * Get method belonging to invoker
+     * @return method
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Check if method has annotation
+     * @param type annotation type
+     * @return has annotation
+     */
+    public boolean hasAnnotation(Class<? extends Annotation> type) {
+        return method.isAnnotationPresent(type);
+    }
+
+    /**
+     * Get annotation of method
+     * @param type annotation type
+     * @return annotation instance, or null if absent
+     * @param <A> type
+     */
+    public <A extends Annotation> A getAnnotation(Class<A> type) {
+        return method.getAnnotation(type);
+    }
+
     /**
      * Get types of parameters
      * @return array of types
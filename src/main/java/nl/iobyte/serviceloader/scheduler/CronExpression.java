@@ -0,0 +1,115 @@
+package nl.iobyte.serviceloader.scheduler;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+public class CronExpression {
+
+    private final BitSet seconds, minutes, hours, days, months, weekdays;
+    private final boolean anyDay, anyWeekday;
+
+    private CronExpression(String expression) {
+        String[] parts = expression.trim().split("\\s+");
+        if(parts.length != 5 && parts.length != 6)
+            throw new IllegalArgumentException("cron expression \""+expression+"\" must have 5 or 6 fields");
+
+        int offset = parts.length - 5;
+        seconds = offset == 1 ? parseField(parts[0], 0, 59) : parseField("0", 0, 59);
+        minutes = parseField(parts[offset], 0, 59);
+        hours = parseField(parts[offset + 1], 0, 23);
+        days = parseField(parts[offset + 2], 1, 31);
+        months = parseField(parts[offset + 3], 1, 12);
+        weekdays = parseField(parts[offset + 4], 0, 7);
+        if(weekdays.get(7))
+            weekdays.set(0);
+
+        anyDay = isAny(parts[offset + 2]);
+        anyWeekday = isAny(parts[offset + 4]);
+    }
+
+    /**
+     * Get next time matching expression after time
+     * @param time exclusive start time
+     * @return next matching time
+     */
+    public ZonedDateTime next(ZonedDateTime time) {
+        ZonedDateTime next = time.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        ZonedDateTime limit = next.plusYears(5);
+        while(next.isBefore(limit)) {
+            if(!months.get(next.getMonthValue())) {
+                next = next.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if(!matchesDay(next)) {
+                next = next.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if(!hours.get(next.getHour())) {
+                next = next.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if(!minutes.get(next.getMinute())) {
+                next = next.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            } else if(!seconds.get(next.getSecond())) {
+                next = next.plusSeconds(1);
+            } else {
+                return next;
+            }
+        }
+
+        throw new IllegalStateException("cron expression has no time matching within 5 years");
+    }
+
+    private boolean matchesDay(ZonedDateTime time) {
+        boolean day = days.get(time.getDayOfMonth());
+        boolean weekday = weekdays.get(time.getDayOfWeek().getValue() % 7);
+        if(anyDay)
+            return weekday;
+
+        if(anyWeekday)
+            return day;
+
+        return day || weekday;
+    }
+
+    private static boolean isAny(String field) {
+        return field.equals("*") || field.equals("?");
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet set = new BitSet(max + 1);
+        for(String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if(slash != -1) {
+                step = Integer.parseInt(part.substring(slash + 1));
+                part = part.substring(0, slash);
+            }
+
+            int from, to;
+            if(isAny(part)) {
+                from = min;
+                to = max;
+            } else if(part.contains("-")) {
+                from = Integer.parseInt(part.substring(0, part.indexOf('-')));
+                to = Integer.parseInt(part.substring(part.indexOf('-') + 1));
+            } else {
+                from = Integer.parseInt(part);
+                to = slash != -1 ? max : from;
+            }
+
+            if(from < min || to > max || from > to || step < 1)
+                throw new IllegalArgumentException("cron field \""+field+"\" is out of range "+min+"-"+max);
+
+            for(int i = from; i <= to; i += step)
+                set.set(i);
+        }
+
+        return set;
+    }
+
+    /**
+     * Parse cron expression
+     * @param expression cron expression with 5 or 6 fields
+     * @return cron expression instance
+     */
+    public static CronExpression parse(String expression) {
+        return new CronExpression(expression);
+    }
+
+}
@@ -0,0 +1,86 @@
+package nl.iobyte.serviceloader.scheduler;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic task re-arming itself on a timing wheel after every run
+ */
+public class ScheduledTask implements Runnable {
+
+    private final TimingWheel wheel;
+    private final Runnable task;
+    private final long rate, delay;
+    private final CronExpression cron;
+    private volatile TimingWheel.Timeout timeout;
+    private volatile boolean cancelled;
+    private long next;
+
+    ScheduledTask(TimingWheel wheel, Runnable task, long rate, long delay, CronExpression cron) {
+        this.wheel = wheel;
+        this.task = task;
+        this.rate = rate;
+        this.delay = delay;
+        this.cron = cron;
+    }
+
+    /**
+     * Cancel task, a run in progress is allowed to finish
+     */
+    public void cancel() {
+        cancelled = true;
+        TimingWheel.Timeout current = timeout;
+        if(current != null)
+            current.cancel();
+    }
+
+    /**
+     * Check if task has been cancelled
+     * @return is cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void arm(long initialDelay) {
+        if(cron != null) {
+            armCron();
+            return;
+        }
+
+        next = System.nanoTime() + initialDelay;
+        timeout = wheel.schedule(this, initialDelay, TimeUnit.NANOSECONDS);
+    }
+
+    private void armCron() {
+        ZonedDateTime now = ZonedDateTime.now();
+        long wait = Duration.between(now, cron.next(now)).toNanos();
+        timeout = wheel.schedule(this, wait, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run() {
+        if(cancelled)
+            return;
+
+        try {
+            task.run();
+        } finally {
+            if(!cancelled) {
+                if(cron != null) {
+                    armCron();
+                } else if(rate > 0) {
+                    next += rate;
+                    timeout = wheel.schedule(this, next - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } else {
+                    timeout = wheel.schedule(this, delay, TimeUnit.NANOSECONDS);
+                }
+
+                if(cancelled)
+                    timeout.cancel();
+            }
+        }
+    }
+
+}
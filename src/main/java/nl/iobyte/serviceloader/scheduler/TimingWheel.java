@@ -0,0 +1,281 @@
+package nl.iobyte.serviceloader.scheduler;
+
+import nl.iobyte.serviceloader.annotations.Scheduled;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel driven by a single timer thread, expired tasks run on virtual threads
+ */
+public class TimingWheel {
+
+    private static final System.Logger LOGGER = System.getLogger(TimingWheel.class.getName());
+
+    private final long tick;
+    private final int mask;
+    private final List<List<Timeout>> buckets = new ArrayList<>();
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long origin = System.nanoTime();
+    private volatile Thread worker;
+    private volatile ExecutorService executor;
+    private volatile boolean closed;
+    private long ticks;
+
+    public TimingWheel() {
+        this(10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    public TimingWheel(long tick, TimeUnit unit, int size) {
+        if(tick <= 0 || size <= 0 || Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("tick must be positive and size a power of two");
+
+        this.tick = unit.toNanos(tick);
+        this.mask = size - 1;
+        for(int i = 0; i < size; i++)
+            buckets.add(new ArrayList<>());
+    }
+
+    /**
+     * Schedule task to run once after delay
+     * @param task task to run
+     * @param delay delay before running
+     * @param unit unit of delay
+     * @return timeout handle, already cancelled once the wheel is closed
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - origin + Math.max(0, unit.toNanos(delay)));
+        pending.add(timeout);
+
+        //Either close clears the timeout added before it, or it is seen here and dropped
+        if(closed) {
+            pending.remove(timeout);
+            timeout.cancel();
+            return timeout;
+        }
+
+        if(worker == null)
+            startWorker();
+
+        return timeout;
+    }
+
+    /**
+     * Schedule periodic task at fixed rate, fixed delay or cron times
+     * @param task task to run
+     * @param rate period between starts, or -1
+     * @param delay delay between runs, or -1
+     * @param initialDelay delay before first run
+     * @param unit unit of rate, delay and initial delay
+     * @param cron cron expression, or null
+     * @return periodic task handle
+     */
+    public ScheduledTask schedule(Runnable task, long rate, long delay, long initialDelay, TimeUnit unit, CronExpression cron) {
+        ScheduledTask scheduled = new ScheduledTask(this, task, unit.toNanos(rate), unit.toNanos(delay), cron);
+        scheduled.arm(unit.toNanos(initialDelay));
+        return scheduled;
+    }
+
+    /**
+     * Schedule method annotated with scheduled on instance
+     * @param owner instance declaring method
+     * @param method annotated method
+     * @return periodic task handle
+     */
+    public ScheduledTask schedule(Object owner, Method method) {
+        Scheduled annotation = validate(method);
+        Runnable task = () -> {
+            try {
+                method.invoke(owner);
+            } catch(InvocationTargetException e) {
+                throw new IllegalStateException("scheduled method "+method.getName()+" failed", e.getCause());
+            } catch(IllegalAccessException e) {
+                throw new IllegalStateException("scheduled method "+method.getName()+" is not accessible", e);
+            }
+        };
+
+        return schedule(
+                task,
+                annotation.rate(),
+                annotation.delay(),
+                annotation.initialDelay(),
+                annotation.unit(),
+                annotation.cron().isEmpty() ? null : CronExpression.parse(annotation.cron())
+        );
+    }
+
+    /**
+     * Validate method can be scheduled
+     * @param method annotated method
+     * @return scheduled annotation
+     */
+    public static Scheduled validate(Method method) {
+        Scheduled annotation = method.getAnnotation(Scheduled.class);
+        if(annotation == null)
+            throw new IllegalStateException("method "+method.getName()+" is not annotated with @Scheduled");
+
+        if(Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0)
+            throw new IllegalStateException("scheduled method "+method.getName()+" must be an instance method without parameters");
+
+        int kinds = (annotation.rate() > 0 ? 1 : 0) + (annotation.delay() > 0 ? 1 : 0) + (annotation.cron().isEmpty() ? 0 : 1);
+        if(kinds != 1)
+            throw new IllegalStateException("scheduled method "+method.getName()+" must set exactly one of rate, delay or cron");
+
+        if(!annotation.cron().isEmpty())
+            CronExpression.parse(annotation.cron());
+
+        return annotation;
+    }
+
+    /**
+     * Stop timer thread and drop all pending timeouts, later timeouts are cancelled right away
+     */
+    public synchronized void close() {
+        closed = true;
+        Thread thread = worker;
+        worker = null;
+        if(thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        ExecutorService service = executor;
+        executor = null;
+        if(service != null)
+            service.shutdown();
+
+        pending.clear();
+        buckets.forEach(List::clear);
+    }
+
+    /**
+     * Check if wheel is closed
+     * @return is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized void startWorker() {
+        if(worker != null || closed)
+            return;
+
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        Thread thread = Thread.ofPlatform()
+                              .name("serviceloader-timer")
+                              .daemon()
+                              .unstarted(this::run);
+
+        worker = thread;
+        thread.start();
+    }
+
+    private void run() {
+        Thread self = Thread.currentThread();
+        ticks = (System.nanoTime() - origin) / tick;
+        while(worker == self) {
+            long deadline = tick * (ticks + 1);
+            long sleep;
+            while((sleep = deadline - (System.nanoTime() - origin)) > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if(worker != self)
+                    return;
+            }
+
+            transfer();
+            expire(buckets.get((int) (ticks & mask)), deadline);
+            ticks++;
+        }
+    }
+
+    private void transfer() {
+        Timeout timeout;
+        while((timeout = pending.poll()) != null) {
+            if(timeout.cancelled)
+                continue;
+
+            long calculated = timeout.deadline / tick;
+            timeout.rounds = (calculated - ticks) / buckets.size();
+            buckets.get((int) (Math.max(calculated, ticks) & mask)).add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket, long deadline) {
+        int kept = 0;
+        for(Timeout timeout : bucket) {
+            if(timeout.cancelled)
+                continue;
+
+            if(timeout.rounds <= 0 && timeout.deadline <= deadline) {
+                execute(timeout.task);
+                continue;
+            }
+
+            timeout.rounds--;
+            bucket.set(kept++, timeout);
+        }
+
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void execute(Runnable task) {
+        ExecutorService service = executor;
+        if(service == null || task == null)
+            return;
+
+        service.execute(() -> {
+            try {
+                task.run();
+            } catch(RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "scheduled task failed", e);
+            }
+        });
+    }
+
+    /**
+     * Handle of a single pending task
+     */
+    public static class Timeout {
+
+        private final long deadline;
+        private volatile Runnable task;
+        private volatile boolean cancelled;
+        private long rounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel task if it has not run yet
+         */
+        public void cancel() {
+            cancelled = true;
+            task = null;
+        }
+
+        /**
+         * Check if task has been cancelled
+         * @return is cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+    }
+
+}
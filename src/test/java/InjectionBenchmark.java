@@ -0,0 +1,246 @@
+import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.annotations.Inject;
+import nl.iobyte.serviceloader.enums.LoaderOption;
+import nl.iobyte.serviceloader.interfaces.IService;
+import org.junit.Test;
+
+import java.util.function.IntSupplier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Calls through a chain of four services, injected into mutable fields, final fields and records.
+ * Each chain is reached from a static final root, so the JIT can treat the root as a constant and fold every link
+ * it trusts not to change. A volatile store per call keeps it from hoisting the links it does not trust out of the loop,
+ * and every call takes the result of the previous one so none of them can be dropped.
+ * HotSpot only trusts record components here, so records run about as fast as the baseline, while final fields
+ * cost as much as mutable ones unless final instance fields are trusted, e.g. with -XX:+TrustFinalNonStaticFields.
+ * Only run by the benchmark profile: mvn test -P benchmark
+ */
+public class InjectionBenchmark {
+
+    private static final int WARMUP = 20, ITERATIONS = 10, CALLS = 10_000_000;
+
+    private static volatile int published;
+
+    @Test
+    public void callChain() {
+        //Each chain computes the same checksum as this loop, checked after every run
+        int expected = 0;
+        for(int i = 0; i < CALLS; i++)
+            expected = expected * 31 + 4;
+
+        //The same work inlined by hand, the cost every chain pays regardless of injection
+        System.out.printf("baseline:       %.2f ns/call%n", measure(expected, () -> {
+            int value = 0;
+            for(int i = 0; i < CALLS; i++) {
+                value = value * 31 + 4;
+                published = value;
+            }
+
+            return value;
+        }));
+        //A loop per chain, so none of them runs through a megamorphic call site
+        System.out.printf("mutable fields: %.2f ns/call%n", measure(expected, () -> {
+            int value = 0;
+            for(int i = 0; i < CALLS; i++) {
+                value = Roots.FIELD.next(value);
+                published = value;
+            }
+
+            return value;
+        }));
+        System.out.printf("final fields:   %.2f ns/call%n", measure(expected, () -> {
+            int value = 0;
+            for(int i = 0; i < CALLS; i++) {
+                value = Roots.FINAL.next(value);
+                published = value;
+            }
+
+            return value;
+        }));
+        System.out.printf("records:        %.2f ns/call%n", measure(expected, () -> {
+            int value = 0;
+            for(int i = 0; i < CALLS; i++) {
+                value = Roots.RECORD.next(value);
+                published = value;
+            }
+
+            return value;
+        }));
+
+        Roots.FIELD_LOADER.stop();
+        Roots.STRICT_LOADER.stop();
+    }
+
+    /**
+     * Get best average time of a call over the measured iterations
+     * @param expected checksum every run should return
+     * @param calls loop making the calls, returning their checksum
+     * @return nanoseconds per call
+     */
+    private static double measure(int expected, IntSupplier calls) {
+        for(int i = 0; i < WARMUP; i++)
+            assertEquals(expected, calls.getAsInt());
+
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            int checksum = calls.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+            assertEquals(expected, checksum);
+        }
+
+        return (double) best / CALLS;
+    }
+
+    /**
+     * Roots of the chains in static final fields, which the JIT treats as constants
+     */
+    private static class Roots {
+
+        private static final ServiceLoader FIELD_LOADER = new ServiceLoader(), STRICT_LOADER = new ServiceLoader(LoaderOption.CONSTRUCTOR_INJECTION);
+        private static final FieldLink1 FIELD;
+        private static final FinalLink1 FINAL;
+        private static final RecordLink1 RECORD;
+
+        static {
+            FIELD_LOADER.register(FieldLink1.class, FieldLink2.class, FieldLink3.class, FieldLink4.class);
+            FIELD_LOADER.init();
+            FIELD_LOADER.start();
+            FIELD = FIELD_LOADER.resolve(FieldLink1.class);
+
+            STRICT_LOADER.register(FinalLink1.class, FinalLink2.class, FinalLink3.class, FinalLink4.class);
+            STRICT_LOADER.register(RecordLink1.class, RecordLink2.class, RecordLink3.class, RecordLink4.class);
+            STRICT_LOADER.init();
+            STRICT_LOADER.start();
+            FINAL = STRICT_LOADER.resolve(FinalLink1.class);
+            RECORD = STRICT_LOADER.resolve(RecordLink1.class);
+        }
+
+    }
+
+    public static class FieldLink1 implements IService {
+
+        @Inject
+        private FieldLink2 link;
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public static class FieldLink2 implements IService {
+
+        @Inject
+        private FieldLink3 link;
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public static class FieldLink3 implements IService {
+
+        @Inject
+        private FieldLink4 link;
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public static class FieldLink4 implements IService {
+
+        public int next(int value) {
+            return value * 31 + 1;
+        }
+
+    }
+
+    public static class FinalLink1 implements IService {
+
+        private final FinalLink2 link;
+
+        public FinalLink1(FinalLink2 link) {
+            this.link = link;
+        }
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public static class FinalLink2 implements IService {
+
+        private final FinalLink3 link;
+
+        public FinalLink2(FinalLink3 link) {
+            this.link = link;
+        }
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public static class FinalLink3 implements IService {
+
+        private final FinalLink4 link;
+
+        public FinalLink3(FinalLink4 link) {
+            this.link = link;
+        }
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public static class FinalLink4 implements IService {
+
+        public int next(int value) {
+            return value * 31 + 1;
+        }
+
+    }
+
+    public record RecordLink1(RecordLink2 link) implements IService {
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public record RecordLink2(RecordLink3 link) implements IService {
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public record RecordLink3(RecordLink4 link) implements IService {
+
+        public int next(int value) {
+            return link.next(value) + 1;
+        }
+
+    }
+
+    public record RecordLink4() implements IService {
+
+        public int next(int value) {
+            return value * 31 + 1;
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.interfaces.IService;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lifecycle of generated graphs of growing size, each step of it should take about linear time.
+ * Only run by the benchmark profile, as it takes about a minute and depends on the machine: mvn test -P benchmark
+ */
+public class ScalingBenchmark {
+
+    private static final int SMALL = 10_000, LARGE = 100_000;
+
+    //Tenfold the services may take this many times longer per service before it counts as superlinear
+    private static final double MAX_GROWTH = 4;
+
+    @Test
+    public void lifecycle() {
+        //Shapes run one after another, so they don't skew each other's timings
+        assertLinear("chain", size -> new ServiceGenerator().chain(size));
+        assertLinear("fan", size -> new ServiceGenerator().fan(size));
+        assertLinear("random", size -> new ServiceGenerator().random(size, 8, 42));
+    }
+
+    @Test
+    public void lateRegistration() {
+        //Registering one service at a time into a started loader only brings up that service and its dependencies
+        registerLate(new ServiceGenerator().fan(1_000));
+        long small = registerLate(new ServiceGenerator().fan(SMALL));
+        long large = registerLate(new ServiceGenerator().fan(LARGE));
+        double growth = ((double) large / LARGE) / ((double) Math.max(small, 1) / SMALL);
+        assertTrue("late registration grew " + growth + " times per service", growth < MAX_GROWTH || large < 50_000_000);
+    }
+
+    /**
+     * Register every service but the first on its own after the loader started
+     * @param types generated service types, the first one depended on by the others
+     * @return nanoseconds taken by the late registrations
+     */
+    private static long registerLate(List<Class<? extends IService>> types) {
+        System.gc();
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(types.get(0));
+        loader.init();
+        loader.start();
+
+        long start = System.nanoTime();
+        for(Class<? extends IService> type : types.subList(1, types.size()))
+            loader.register(type);
+
+        long time = System.nanoTime() - start;
+        loader.stop();
+        return time;
+    }
+
+    /**
+     * Check time per service of every lifecycle step grows less than the max growth from small to large graphs
+     * @param name name of shape
+     * @param shape generator of graph with size
+     */
+    private static void assertLinear(String name, IntFunction<List<Class<? extends IService>>> shape) {
+        //Warm up code paths before measuring
+        run(shape.apply(1_000));
+
+        long[] small = run(shape.apply(SMALL));
+        long[] large = run(shape.apply(LARGE));
+        String[] steps = {"register", "init", "start", "stop"};
+        for(int i = 0; i < steps.length; i++) {
+            double growth = ((double) large[i] / LARGE) / ((double) Math.max(small[i], 1) / SMALL);
+            assertTrue(name + " " + steps[i] + " grew " + growth + " times per service", growth < MAX_GROWTH || large[i] < 50_000_000);
+        }
+    }
+
+    /**
+     * Run lifecycle of services
+     * @param types generated service types
+     * @return nanoseconds taken by register, init, start and stop
+     */
+    private static long[] run(List<Class<? extends IService>> types) {
+        //Leave garbage of the previous run out of the timings
+        System.gc();
+        ServiceLoader loader = new ServiceLoader();
+        long[] times = new long[4];
+
+        long start = System.nanoTime();
+        loader.register(types);
+        times[0] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        loader.init();
+        times[1] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        loader.start();
+        times[2] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        loader.stop();
+        times[3] = System.nanoTime() - start;
+        return times;
+    }
+
+}
@@ -0,0 +1,37 @@
+import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.dag.CycleFoundException;
+import nl.iobyte.serviceloader.interfaces.IService;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lifecycle of generated graphs of every shape, timings of growing graphs are checked by the scaling benchmark
+ */
+public class ScalingTest {
+
+    @Test
+    public void shapes() {
+        ServiceGenerator generator = new ServiceGenerator();
+        for(List<Class<? extends IService>> types : List.of(
+                generator.chain(50),
+                generator.fan(50),
+                generator.diamonds(50),
+                generator.random(50, 4, 42)
+        )) {
+            ServiceLoader loader = new ServiceLoader();
+            loader.register(types);
+            loader.init();
+            loader.start();
+            types.forEach(type -> assertEquals(1, generator.getCount(type)));
+            loader.stop();
+        }
+
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(generator.cycle(5));
+        assertThrows(CycleFoundException.class, loader::init);
+    }
+
+}
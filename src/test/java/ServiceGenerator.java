@@ -0,0 +1,209 @@
+import nl.iobyte.serviceloader.generator.BytecodeWriter;
+import nl.iobyte.serviceloader.interfaces.IService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static nl.iobyte.serviceloader.generator.BytecodeWriter.*;
+
+/**
+ * Defines service classes at runtime, each taking its dependencies through its constructor and counting its instances.
+ * Graphs of generated services are returned dependencies first, so they can be registered in order.
+ */
+public class ServiceGenerator extends ClassLoader {
+
+    private final Map<Class<?>, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> pending = new HashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    public ServiceGenerator() {
+        super(ServiceGenerator.class.getClassLoader());
+    }
+
+    /**
+     * Define service class depending on types
+     * @param dependencies list of service types
+     * @return service type
+     */
+    public synchronized Class<? extends IService> generate(List<Class<? extends IService>> dependencies) {
+        String name = nextName();
+        byte[] bytes = write(name, dependencies.stream().map(Class::getName).toList());
+        return defineClass(name, bytes, 0, bytes.length).asSubclass(IService.class);
+    }
+
+    /**
+     * Generate services each depending on the one before
+     * @param size amount of services
+     * @return list of service types
+     */
+    public List<Class<? extends IService>> chain(int size) {
+        int[][] dependencies = new int[size][];
+        for(int i = 0; i < size; i++)
+            dependencies[i] = i == 0 ? new int[0] : new int[]{i - 1};
+
+        return generate(dependencies);
+    }
+
+    /**
+     * Generate services all depending on the first
+     * @param size amount of services
+     * @return list of service types
+     */
+    public List<Class<? extends IService>> fan(int size) {
+        int[][] dependencies = new int[size][];
+        for(int i = 0; i < size; i++)
+            dependencies[i] = i == 0 ? new int[0] : new int[]{0};
+
+        return generate(dependencies);
+    }
+
+    /**
+     * Generate stacked diamonds, every top depending on two services that depend on the previous top
+     * @param size amount of services
+     * @return list of service types
+     */
+    public List<Class<? extends IService>> diamonds(int size) {
+        int[][] dependencies = new int[size][];
+        for(int i = 0; i < size; i++) {
+            if(i == 0) {
+                dependencies[i] = new int[0];
+            } else if(i % 3 == 0) {
+                dependencies[i] = new int[]{i - 2, i - 1};
+            } else {
+                dependencies[i] = new int[]{i - (i % 3)};
+            }
+        }
+
+        return generate(dependencies);
+    }
+
+    /**
+     * Generate services depending on random services generated before them
+     * @param size amount of services
+     * @param maxDependencies maximum amount of dependencies per service
+     * @param seed seed of random
+     * @return list of service types
+     */
+    public List<Class<? extends IService>> random(int size, int maxDependencies, long seed) {
+        Random random = new Random(seed);
+        int[][] dependencies = new int[size][];
+        for(int i = 0; i < size; i++)
+            dependencies[i] = i == 0 ? new int[0] : random.ints(random.nextInt(maxDependencies + 1), 0, i).distinct().toArray();
+
+        return generate(dependencies);
+    }
+
+    /**
+     * Generate chain of services of which the first depends on the last
+     * @param size amount of services in the cycle
+     * @return list of service types
+     */
+    public List<Class<? extends IService>> cycle(int size) {
+        int[][] dependencies = new int[size][];
+        for(int i = 0; i < size; i++)
+            dependencies[i] = new int[]{(i + size - 1) % size};
+
+        return generate(dependencies);
+    }
+
+    /**
+     * Get amount of instances created of type
+     * @param type generated service type
+     * @return amount of instances
+     */
+    public int getCount(Class<?> type) {
+        AtomicInteger count = counts.get(type);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Called by constructor of every generated service
+     * @param service created instance
+     */
+    public static void created(Object service) {
+        ((ServiceGenerator) service.getClass().getClassLoader()).counts
+                .computeIfAbsent(service.getClass(), type -> new AtomicInteger())
+                .incrementAndGet();
+    }
+
+    /**
+     * Generate services by index, classes are defined when first loaded so they may refer to each other
+     * @param dependencies indices of dependencies per service
+     * @return list of service types
+     */
+    private synchronized List<Class<? extends IService>> generate(int[][] dependencies) {
+        List<String> names = new ArrayList<>(dependencies.length);
+        for(int i = 0; i < dependencies.length; i++)
+            names.add(nextName());
+
+        for(int i = 0; i < dependencies.length; i++) {
+            List<String> types = new ArrayList<>(dependencies[i].length);
+            for(int dependency : dependencies[i])
+                types.add(names.get(dependency));
+
+            pending.put(names.get(i), write(names.get(i), types));
+        }
+
+        List<Class<? extends IService>> list = new ArrayList<>(dependencies.length);
+        for(String name : names) {
+            try {
+                list.add(loadClass(name).asSubclass(IService.class));
+            } catch(ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        //Generated names are never found by the parent, skip searching it
+        synchronized(this) {
+            Class<?> type = findLoadedClass(name);
+            if(type == null && pending.containsKey(name))
+                type = findClass(name);
+
+            if(type != null)
+                return type;
+        }
+
+        return super.loadClass(name, resolve);
+    }
+
+    @Override
+    protected synchronized Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = pending.remove(name);
+        if(bytes == null)
+            throw new ClassNotFoundException(name);
+
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    private String nextName() {
+        return "GeneratedService" + ids.incrementAndGet();
+    }
+
+    private static byte[] write(String name, List<String> dependencies) {
+        StringBuilder descriptor = new StringBuilder("(");
+        dependencies.forEach(dependency -> descriptor.append('L').append(dependency.replace('.', '/')).append(';'));
+        descriptor.append(")V");
+
+        BytecodeWriter writer = new BytecodeWriter(name, "java/lang/Object", internalName(IService.class));
+        writer.method(ACC_PUBLIC, "<init>", descriptor.toString())
+              .var(ALOAD, 0)
+              .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false)
+              .var(ALOAD, 0)
+              .invoke(INVOKESTATIC, internalName(ServiceGenerator.class), "created", "(Ljava/lang/Object;)V", false)
+              .op(RETURN)
+              .maxs(1, dependencies.size() + 1);
+
+        return writer.toByteArray();
+    }
+
+}
@@ -1,10 +1,63 @@
 import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.cache.BoundedCache;
+import nl.iobyte.serviceloader.dag.CycleFoundException;
+import nl.iobyte.serviceloader.dag.DAG;
+import nl.iobyte.serviceloader.annotations.Async;
+import nl.iobyte.serviceloader.annotations.Batched;
+import nl.iobyte.serviceloader.annotations.Cacheable;
 import nl.iobyte.serviceloader.annotations.Inject;
+import nl.iobyte.serviceloader.annotations.Scheduled;
+import nl.iobyte.serviceloader.annotations.Sharded;
+import nl.iobyte.serviceloader.annotations.Subscribe;
+import nl.iobyte.serviceloader.annotations.Tier;
+import nl.iobyte.serviceloader.enums.LifecycleEventType;
+import nl.iobyte.serviceloader.enums.LoaderOption;
+import nl.iobyte.serviceloader.enums.ServiceState;
+import nl.iobyte.serviceloader.events.LifecycleDispatcher;
+import nl.iobyte.serviceloader.events.LifecycleEvent;
+import nl.iobyte.serviceloader.generator.ReflectionConfigGenerator;
 import nl.iobyte.serviceloader.interfaces.IService;
+import nl.iobyte.serviceloader.metrics.ServiceMetrics;
+import nl.iobyte.serviceloader.objects.ServiceContainer;
+import nl.iobyte.serviceloader.objects.StartupProgress;
+import nl.iobyte.serviceloader.objects.StartupResult;
+import nl.iobyte.serviceloader.objects.TimingHistory;
+import nl.iobyte.serviceloader.scheduler.CronExpression;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
 public class ServiceTest {
 
+    //Set by the static initializer of TestPreloadDependency, kept outside it so reading them doesn't initialize it
+    private static final CountDownLatch PRELOADED = new CountDownLatch(1);
+    private static volatile Thread preloadThread;
+
     @Test
     public void register() {
         ServiceLoader loader = new ServiceLoader();
@@ -23,34 +76,1361 @@ public class ServiceTest {
         loader.stop();
     }
 
-    public static class TestService implements IService {
+    @Test
+    public void resolveAll() {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestPluginRegistry.class, TestPluginA.class, TestPluginB.class);
 
-        @Inject
-        private TestDependencyService test;
+        loader.init();
+        loader.start();
 
-        @Inject
-        private TestInjectService testInjectService;
+        List<TestPlugin> plugins = loader.resolveAll(TestPlugin.class);
+        assertEquals(2, plugins.size());
+        assertSame(plugins, loader.resolveAll(TestPlugin.class));
+        assertSame(loader.resolve(TestPluginB.class), plugins.get(0));
+        assertSame(loader.resolve(TestPluginA.class), plugins.get(1));
 
-        public TestService() {
+        TestPluginRegistry registry = loader.resolve(TestPluginRegistry.class);
+        assertSame(plugins, registry.list);
+        assertArrayEquals(plugins.toArray(), registry.array);
+
+        //Bindings follow registrations without a dependency edge
+        loader.register(TestPluginC.class);
+        assertEquals(3, registry.list.size());
+        assertTrue(registry.list.contains(loader.resolve(TestPluginC.class)));
+        assertSame(registry.list, loader.resolveAll(TestPlugin.class));
+        assertEquals(3, registry.array.length);
+
+        loader.unregister(TestPluginC.class);
+        assertEquals(plugins, registry.list);
+        assertEquals(2, registry.array.length);
+
+        loader.stop();
+        assertTrue(loader.resolveAll(TestPlugin.class).isEmpty());
+    }
+
+    @Test
+    public void generatedInjectors() {
+        ServiceLoader loader = new ServiceLoader(LoaderOption.GENERATED_INJECTORS);
+        loader.register(TestService.class, TestInjectService.class, TestDependencyService.class, TestPluginRegistry.class, TestPluginA.class, TestPluginB.class);
+
+        loader.init();
+        loader.start();
+
+        TestService service = loader.resolve(TestService.class);
+        assertSame(loader.resolve(TestDependencyService.class), service.test);
+        assertSame(loader.resolve(TestInjectService.class), service.testInjectService);
+
+        TestPluginRegistry registry = loader.resolve(TestPluginRegistry.class);
+        assertEquals(loader.resolveAll(TestPlugin.class), registry.list);
+        assertEquals(2, registry.array.length);
+
+        //Values are the same through reflection, check every service went through a generated class
+        for(ServiceContainer<?> container : loader.getContainers()) {
+            assertNotNull(container.getType().getName(), container.getInjector());
+            assertTrue(container.getInjector().getClass().isHidden());
         }
+        loader.stop();
+    }
+
+    @Test
+    public void events() throws InterruptedException {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestListenerService.class);
+
+        loader.getEventBus().publish("ignored");
+        loader.init();
+        loader.start();
 
+        TestListenerService listener = loader.resolve(TestListenerService.class);
+        loader.getEventBus().publish("a");
+        loader.getEventBus().publishAll("b", 1, "c");
+        assertEquals(List.of("a", "b", "c"), listener.strings);
+        assertEquals(List.of("a", "b", 1, "c"), listener.objects);
+        assertTrue(listener.async.await(5, TimeUnit.SECONDS));
+
+        loader.stop();
+        assertTrue(loader.getEventBus().isClosed());
+        loader.getEventBus().publish("d");
+        assertEquals(3, listener.strings.size());
     }
 
-    public static class TestDependencyService implements IService {
+    @Test
+    public void scheduled() throws InterruptedException {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestScheduledService.class);
 
-        public TestDependencyService(TestInjectService service) {
+        loader.init();
+        loader.start();
+
+        TestScheduledService service = loader.resolve(TestScheduledService.class);
+        assertTrue(service.latch.await(5, TimeUnit.SECONDS));
+
+        loader.stop();
+        Thread.sleep(50);
+        int count = service.count.get();
+        Thread.sleep(100);
+        assertEquals(count, service.count.get());
+
+        //A closed wheel does not start its timer again
+        assertTrue(loader.getScheduler().schedule(service.count::incrementAndGet, 0, TimeUnit.MILLISECONDS).isCancelled());
+
+        ZonedDateTime time = ZonedDateTime.parse("2024-01-01T10:07:30Z");
+        assertEquals(ZonedDateTime.parse("2024-01-01T10:15:00Z"), CronExpression.parse("*/15 * * * *").next(time));
+        assertEquals(ZonedDateTime.parse("2024-01-06T00:00:00Z"), CronExpression.parse("0 0 * * 6").next(time));
+    }
+
+    @Test
+    public void warmup() throws InterruptedException {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestWarmService.class, TestWarmDependencyService.class);
+
+        loader.init();
+        loader.start();
+
+        assertTrue(loader.awaitReady(Duration.ofSeconds(5)));
+        assertTrue(loader.isReady());
+
+        TestWarmService service = loader.resolve(TestWarmService.class);
+        assertTrue(service.warm);
+        assertTrue(service.dependencyWarm);
+
+        loader.stop();
+        assertFalse(loader.awaitReady());
+    }
+
+    @Test
+    public void parallelStop() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestStopService.class, TestSlowStopService.class);
+
+        loader.init();
+        loader.start();
+
+        //Stop gives up on the hanging service while it is still stopping, after stopping its dependent first
+        TestStopService service = loader.resolve(TestStopService.class);
+        assertFalse(loader.stop(Duration.ofMillis(50), Duration.ofSeconds(1)));
+        Thread stopping = TestSlowStopService.STOPPING.poll(5, TimeUnit.SECONDS);
+        assertNotNull(stopping);
+        assertEquals(Thread.State.WAITING, stopping.getState());
+        assertTrue(service.stoppedFirst);
+        assertNull(loader.resolve(TestSlowStopService.class));
+        TestSlowStopService.RELEASE.countDown();
+    }
+
+    @Test
+    public void lateCycle() {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestInjectService.class);
+        loader.init();
+        loader.start();
+
+        //A running graph rejects a batch closing a cycle without registering any of it
+        assertThrows(CycleFoundException.class, () -> loader.register(TestCycleA.class, TestCycleB.class));
+        assertNull(loader.resolve(TestCycleA.class));
+        assertEquals(1, loader.getContainers().size());
+        assertEquals(1, loader.resolveAll(IService.class).size());
+        loader.stop();
+    }
+
+    @Test
+    public void restart() {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestService.class, TestInjectService.class, TestDependencyService.class, TestPluginRegistry.class, TestPluginA.class, TestPluginB.class);
+
+        loader.init();
+        loader.start();
+
+        TestService service = loader.resolve(TestService.class);
+        TestInjectService inject = loader.resolve(TestInjectService.class);
+        TestPluginA pluginA = loader.resolve(TestPluginA.class);
+        TestPluginRegistry registry = loader.resolve(TestPluginRegistry.class);
+
+        loader.restart(TestDependencyService.class);
+        assertNotSame(service, loader.resolve(TestService.class));
+        assertSame(inject, loader.resolve(TestInjectService.class));
+        assertSame(loader.resolve(TestDependencyService.class), loader.resolve(TestService.class).test);
+
+        loader.restart(TestPluginB.class);
+        assertNotSame(pluginA, loader.resolve(TestPluginA.class));
+        assertSame(registry, loader.resolve(TestPluginRegistry.class));
+        assertEquals(loader.resolveAll(TestPlugin.class), registry.list);
+        loader.stop();
+    }
+
+    @Test
+    public void replace() {
+        ServiceLoader loader = new ServiceLoader();
+        loader.bind(TestGreeter.class, TestEnglishGreeter.class);
+        loader.register(TestGreeterClient.class);
+
+        loader.init();
+        loader.start();
+        assertEquals("hello", loader.resolve(TestGreeterClient.class).greeter.greet());
+
+        loader.replace(TestGreeter.class, TestDutchGreeter.class);
+        assertEquals("hallo", loader.resolve(TestGreeterClient.class).greeter.greet());
+        assertTrue(loader.resolve(TestGreeter.class) instanceof TestDutchGreeter);
+
+        //Replacements failing validation or init leave the running services untouched
+        TestGreeterClient client = loader.resolve(TestGreeterClient.class);
+        assertThrows(CycleFoundException.class, () -> loader.replace(TestGreeter.class, TestCyclicGreeter.class));
+        assertThrows(IllegalStateException.class, () -> loader.replace(TestGreeter.class, TestBrokenGreeter.class));
+        assertSame(client, loader.resolve(TestGreeterClient.class));
+        assertEquals("hallo", client.greeter.greet());
+        assertEquals(List.of(TestGreeter.class, TestGreeterClient.class), loader.getContainers().stream().map(ServiceContainer::getServiceType).toList());
+
+        //A replacement failing to start is swapped back out for the previous implementation
+        assertThrows(IllegalStateException.class, () -> loader.replace(TestGreeter.class, TestUnstartableGreeter.class));
+        assertTrue(loader.resolve(TestGreeter.class) instanceof TestDutchGreeter);
+        assertEquals("hallo", loader.resolve(TestGreeterClient.class).greeter.greet());
+        loader.stop();
+    }
+
+    @Test
+    public void unregister() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestService.class, TestInjectService.class, TestDependencyService.class, TestPluginRegistry.class, TestPluginA.class, TestPluginB.class);
+
+        loader.init();
+        loader.start();
+
+        TestPluginRegistry registry = loader.resolve(TestPluginRegistry.class);
+        loader.unregister(TestPluginB.class);
+        assertNull(loader.resolve(TestPluginA.class));
+        assertNull(loader.resolve(TestPluginB.class));
+        assertTrue(registry.list.isEmpty());
+
+        WeakReference<ClassLoader> plugin = loadPlugin(loader);
+        for(int i = 0; i < 100 && plugin.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
         }
 
+        assertNull(plugin.get());
+        assertNotNull(loader.resolve(TestService.class));
+        loader.stop();
     }
 
-    public static class TestInjectService implements IService {
+    private static WeakReference<ClassLoader> loadPlugin(ServiceLoader loader) throws Exception {
+        ClassLoader classLoader = new TestPluginClassLoader(ServiceTest.class.getClassLoader());
+        Class<? extends IService> type = classLoader.loadClass(TestUnloadPlugin.class.getName()).asSubclass(IService.class);
+        assertNotSame(TestUnloadPlugin.class, type);
+
+        loader.register(type);
+        assertNotNull(loader.resolve(type));
+        loader.getEventBus().publish(type.getName());
+        loader.unregister(type);
+        assertNull(loader.resolve(type));
 
+        return new WeakReference<>(classLoader);
     }
 
-    public static class HalfWayService implements IService {
+    @Test
+    public void concurrentRegister() throws Exception {
+        ServiceGenerator generator = new ServiceGenerator();
+        Class<? extends IService> root = generator.generate(List.of());
+        List<List<Class<? extends IService>>> chains = new ArrayList<>();
+        for(int i = 0; i < 8; i++) {
+            List<Class<? extends IService>> chain = new ArrayList<>();
+            chain.add(generator.generate(List.of(root)));
+            for(int j = 1; j < 50; j++)
+                chain.add(generator.generate(List.of(root, chain.get(j - 1))));
 
-        @Inject
-        private TestService service;
+            chains.add(chain);
+        }
+
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(root);
+
+        //Register chains from many threads while the loader initializes and starts
+        CountDownLatch halfway = new CountDownLatch(chains.size());
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean consistent = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for(List<Class<? extends IService>> chain : chains) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for(int i = 0; i < chain.size(); i++) {
+                    loader.register(chain.get(i));
+                    if(i == chain.size() / 2)
+                        halfway.countDown();
+                }
+            }));
+        }
+
+        Thread resolver = Thread.ofPlatform().start(() -> {
+            int last = 0;
+            while(running.get()) {
+                List<IService> list = loader.resolveAll(IService.class);
+                if(list.size() < last || list.stream().distinct().count() != list.size())
+                    consistent.set(false);
+
+                last = list.size();
+            }
+        });
+
+        halfway.await();
+        loader.init();
+        loader.start();
+        for(Thread thread : threads)
+            thread.join();
+
+        running.set(false);
+        resolver.join();
+        assertTrue(consistent.get());
+        assertTrue(loader.awaitReady(Duration.ofSeconds(5)));
+        assertEquals(1 + 8 * 50, loader.resolveAll(IService.class).size());
+        assertEquals(1, generator.getCount(root));
+        for(List<Class<? extends IService>> chain : chains) {
+            for(Class<? extends IService> type : chain) {
+                assertEquals(1, generator.getCount(type));
+                assertNotNull(loader.resolve(type));
+            }
+        }
+
+        loader.stop();
+    }
+
+    @Test
+    public void startIsolated() throws InterruptedException {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestService.class, TestInjectService.class, TestDependencyService.class, TestFailingService.class, TestFailingDependentService.class);
+
+        StartupResult result = loader.startIsolated();
+        assertTrue(result.isDegraded());
+        assertEquals(List.of(TestFailingService.class, TestFailingDependentService.class), List.copyOf(result.getFailed().keySet()));
+        assertEquals(TestFailingService.class.getSimpleName(), result.getCause(TestFailingService.class).getMessage());
+        assertSame(result.getCause(TestFailingService.class), result.getCause(TestFailingDependentService.class).getCause());
+        assertEquals(3, result.getStarted().size());
+
+        assertTrue(loader.awaitReady(Duration.ofSeconds(1)));
+        assertNotNull(loader.resolve(TestService.class));
+        assertNull(loader.resolve(TestFailingService.class));
+        assertNull(loader.resolve(TestFailingDependentService.class));
+        loader.stop();
+    }
+
+    @Test
+    public void sharded() throws InterruptedException {
+        ServiceLoader loader = new ServiceLoader();
+        loader.bind(TestCounter.class, TestShardedCounter.class);
+        loader.init();
+        loader.start();
+
+        TestCounter counter = loader.resolve(TestCounter.class);
+        assertFalse(counter instanceof TestShardedCounter);
+        assertTrue(counter.getClass().isHidden());
+
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+            threads.add(Thread.ofPlatform().start(() -> {
+                for(int j = 0; j < 1000; j++)
+                    counter.increment();
+            }));
+
+        for(Thread thread : threads)
+            thread.join();
+
+        assertEquals(4, loader.resolveShards(TestCounter.class).size());
+        assertEquals(8000, loader.resolveShards(TestCounter.class).stream().mapToLong(TestCounter::get).sum());
+        loader.stop();
+        assertNull(loader.resolveShards(TestCounter.class));
+    }
+
+    @Test
+    public void metrics() {
+        ServiceLoader loader = new ServiceLoader(LoaderOption.METRICS);
+        loader.bind(TestCalculator.class, TestSimpleCalculator.class);
+        loader.init();
+        loader.start();
+
+        TestCalculator calculator = loader.resolve(TestCalculator.class);
+        assertTrue(calculator.getClass().isHidden());
+        for(int i = 0; i < 100; i++)
+            assertEquals(i + 1, calculator.add(i, 1));
+
+        assertThrows(ArithmeticException.class, () -> calculator.divide(1, 0));
+        assertEquals(4, calculator.divide(8, 2));
+
+        ServiceMetrics metrics = loader.getMetrics(TestCalculator.class);
+        assertEquals(100, metrics.getHistogram("add").getCount());
+        assertEquals(2, metrics.getHistogram("divide").getCount());
+        assertTrue(metrics.getHistogram("add").getValueAtPercentile(99) <= metrics.getHistogram("add").getMax());
+        assertNull(new ServiceLoader().getMetrics(TestCalculator.class));
+        loader.stop();
+    }
+
+    @Test
+    public void cacheable() throws InterruptedException {
+        ServiceLoader loader = new ServiceLoader();
+        loader.bind(TestLookup.class, TestCachedLookup.class);
+        loader.init();
+        loader.start();
+
+        //Concurrent loads of the same key run once
+        TestLookup lookup = loader.resolve(TestLookup.class);
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+            threads.add(Thread.ofPlatform().start(() -> assertEquals("value-1", lookup.lookup(1))));
+
+        for(Thread thread : threads)
+            thread.join();
+
+        assertEquals("value-2", lookup.lookup(2));
+        assertEquals("value-2", lookup.lookup(2));
+        assertFalse(lookup instanceof TestCachedLookup);
+        assertTrue(lookup.getClass().isHidden());
+        assertEquals(2, lookup.getCalls());
+
+        BoundedCache<?, ?> cache = loader.getCaches(TestLookup.class).values().iterator().next().getCache();
+        assertEquals(2, cache.size());
+        assertTrue(cache.getHits() >= 1);
+
+        //Expired results load again
+        assertEquals(16, lookup.square(4));
+        assertEquals(16, lookup.square(4));
+        assertEquals(1, lookup.getSquares());
+        Thread.sleep(60);
+        assertEquals(16, lookup.square(4));
+        assertEquals(2, lookup.getSquares());
+        loader.stop();
+    }
+
+    @Test
+    public void boundedCache() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(100, Duration.ZERO);
+        for(int i = 0; i < 10_000; i++) {
+            cache.get(-1, key -> key);
+            cache.get(i, key -> key);
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertNotNull(cache.getIfPresent(-1));
+        assertTrue(cache.getEvictions() >= 10_000 - 100);
+    }
+
+    @Test
+    public void async() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        loader.bind(TestFetcher.class, TestAsyncFetcher.class);
+        loader.init();
+        loader.start();
+
+        //Calls return while every fetch is held, and the limit lets exactly two of them run at once
+        TestFetcher fetcher = loader.resolve(TestFetcher.class);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for(int i = 0; i < 6; i++)
+            futures.add(fetcher.fetch("key-" + i));
+
+        assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+        while(fetcher.getMaxConcurrent() < 2)
+            Thread.onSpinWait();
+
+        TestAsyncFetcher.RELEASE.countDown();
+        for(int i = 0; i < 6; i++)
+            assertEquals("key-" + i + ":true", futures.get(i).get(5, TimeUnit.SECONDS));
+
+        assertEquals(2, fetcher.getMaxConcurrent());
+        assertEquals(6, fetcher.getCount());
+
+        loader.stop();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> fetcher.fetch("key").get());
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void hungAsyncStop() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        loader.bind(TestFetcher.class, TestHangingFetcher.class);
+        loader.setDrainTimeout(Duration.ofMillis(50));
+        loader.init();
+        loader.start();
+
+        //A call that never returns only delays shutdown by the drain timeout, the call itself keeps hanging
+        TestFetcher fetcher = loader.resolve(TestFetcher.class);
+        fetcher.fetch("key");
+        Thread fetching = TestHangingFetcher.FETCHING.poll(5, TimeUnit.SECONDS);
+        Thread stopping = Thread.ofPlatform().start(loader::stop);
+        assertTrue(stopping.join(Duration.ofMillis(50).plusSeconds(10)));
+        assertEquals(Thread.State.WAITING, fetching.getState());
+        assertNull(loader.resolve(TestFetcher.class));
+
+        //Stop with a deadline drains for no longer than the deadline
+        ServiceLoader bounded = new ServiceLoader();
+        bounded.bind(TestFetcher.class, TestHangingFetcher.class);
+        bounded.init();
+        bounded.start();
+        bounded.resolve(TestFetcher.class).fetch("key");
+        fetching = TestHangingFetcher.FETCHING.poll(5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> stopped = CompletableFuture.supplyAsync(() -> bounded.stop(Duration.ofSeconds(30), Duration.ofMillis(100)));
+        assertFalse(stopped.get(Duration.ofMillis(100).plusSeconds(10).toMillis(), TimeUnit.MILLISECONDS));
+        assertEquals(Thread.State.WAITING, fetching.getState());
+        TestHangingFetcher.RELEASE.countDown();
+    }
+
+    @Test
+    public void batched() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        loader.bind(TestRepository.class, TestBatchedRepository.class);
+        loader.init();
+        loader.start();
+
+        //Full batches are sent without waiting for the window
+        TestRepository repository = loader.resolve(TestRepository.class);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for(int i = 0; i < 100; i++)
+            futures.add(repository.load(i % 50 == 0 ? 0 : i));
+
+        for(int i = 0; i < 100; i++)
+            assertEquals("entity-" + (i % 50 == 0 ? 0 : i), futures.get(i).get(5, TimeUnit.SECONDS));
+
+        assertEquals(2, repository.getBulkCalls());
+
+        //Partial batch is sent after the window
+        assertEquals("entity-7", repository.load(7).get(5, TimeUnit.SECONDS));
+        assertEquals(3, repository.getBulkCalls());
+        loader.stop();
+
+        //Calls after stop fail instead of waiting for a window that never closes
+        ExecutionException e = assertThrows(ExecutionException.class, () -> repository.load(8).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertEquals(3, repository.getBulkCalls());
+    }
+
+    @Test
+    public void discover() {
+        ServiceLoader loader = new ServiceLoader();
+        assertEquals(
+                List.of(TestFirstExtension.class, TestSecondExtension.class),
+                loader.discover(TestExtension.class, ServiceTest.class.getClassLoader())
+        );
+        assertEquals(0, TestFirstExtension.CREATED.get());
+
+        //Discovering again leaves registered providers alone
+        loader.discover(TestExtension.class, ServiceTest.class.getClassLoader());
+        loader.init();
+        loader.start();
+        assertEquals(2, loader.resolveAll(TestExtension.class).size());
+        assertEquals(1, TestFirstExtension.CREATED.get());
+        loader.stop();
+    }
+
+    @Test
+    public void preload() throws InterruptedException {
+        ServiceLoader loader = new ServiceLoader(LoaderOption.PRELOAD);
+        loader.register(TestPreloadService.class);
+
+        //Dependency is initialized in the background before it is even registered
+        assertTrue(PRELOADED.await(5, TimeUnit.SECONDS));
+        assertNotEquals(Thread.currentThread(), preloadThread);
+
+        loader.register(TestPreloadDependency.class);
+        loader.init();
+        loader.start();
+        assertNotNull(loader.resolve(TestPreloadService.class).dependency);
+        loader.stop();
+    }
+
+    @Test
+    public void constructorInjection() {
+        ServiceLoader loader = new ServiceLoader(LoaderOption.CONSTRUCTOR_INJECTION);
+        loader.register(TestInjectService.class, TestDependencyService.class, TestFinalService.class, TestRecordService.class);
+        loader.init();
+        loader.start();
+
+        TestDependencyService dependency = loader.resolve(TestDependencyService.class);
+        assertSame(dependency, loader.resolve(TestFinalService.class).dependency);
+        assertSame(dependency, loader.resolve(TestRecordService.class).dependency());
+        loader.stop();
+
+        //Field injection is rejected while registering
+        assertThrows(IllegalStateException.class, () -> new ServiceLoader(LoaderOption.CONSTRUCTOR_INJECTION).register(TestPreloadService.class));
+    }
+
+    @Test
+    public void reflectionConfig() {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestInjectService.class, TestDependencyService.class, TestPreloadService.class, TestListenerService.class);
+        assertEquals("""
+                [
+                  {
+                    "name": "ServiceTest$TestDependencyService",
+                    "methods": [
+                      {"name": "<init>", "parameterTypes": ["ServiceTest$TestInjectService"]}
+                    ]
+                  },
+                  {
+                    "name": "ServiceTest$TestInjectService",
+                    "methods": [
+                      {"name": "<init>", "parameterTypes": []}
+                    ]
+                  },
+                  {
+                    "name": "ServiceTest$TestListenerService",
+                    "methods": [
+                      {"name": "<init>", "parameterTypes": []},
+                      {"name": "onAsync", "parameterTypes": ["java.lang.CharSequence"]},
+                      {"name": "onObject", "parameterTypes": ["java.lang.Object"]},
+                      {"name": "onString", "parameterTypes": ["java.lang.String"]}
+                    ]
+                  },
+                  {
+                    "name": "ServiceTest$TestPreloadService",
+                    "methods": [
+                      {"name": "<init>", "parameterTypes": []}
+                    ],
+                    "fields": [
+                      {"name": "dependency"}
+                    ]
+                  }
+                ]
+                """, ReflectionConfigGenerator.generate(loader));
+    }
+
+    @Test
+    public void criticalPath() throws IOException {
+        Path file = Files.createTempDirectory("timings").resolve("timings.txt");
+        TimingHistory history = new TimingHistory(file);
+        history.record(TestCriticalService.class, 0, 50_000_000);
+        history.record(TestCriticalDependentService.class, 0, 50_000_000);
+        history.save();
+
+        //Quick services come first in the graph, but the slow chain is started before them
+        ServiceLoader loader = new ServiceLoader();
+        loader.setTimingHistory(new TimingHistory(file));
+        loader.setStartupParallelism(1);
+        loader.register(TestQuickService.class, TestCriticalDependentService.class, TestCriticalService.class);
+        assertFalse(loader.startIsolated().isDegraded());
+        assertSame(loader.resolve(TestCriticalService.class), TestCriticalService.STARTED.peek());
+        loader.stop();
+
+        //Durations of every service are saved after startup
+        TimingHistory saved = new TimingHistory(file);
+        assertTrue(saved.getStart(TestQuickService.class) >= 0);
+        assertTrue(saved.getCost(TestCriticalService.class) > saved.getCost(TestQuickService.class));
+        assertEquals(saved.getAverageCost(), saved.getCost(String.class));
+        assertEquals(7, saved.getCost(String.class, 7));
+
+        //A visit on an executor refusing work fails instead of hanging
+        DAG<Integer> dag = new DAG<>();
+        dag.addEdge(1, 2);
+        dag.update();
+        CompletableFuture<Void> rejected = dag.visitReverseAsync(node -> {}, task -> {
+            throw new RejectedExecutionException();
+        }, node -> 0, 2);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void tiers() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(TestServingService.class, TestReportingService.class);
+        loader.register(2, TestPrefillService.class);
+        loader.init();
+
+        //Start returns while the reporting service is still blocked in its own start, but the loader is not ready yet
+        loader.start();
+        assertNotNull(loader.resolve(TestServingService.class));
+        assertFalse(loader.awaitReady(Duration.ofMillis(50)));
+        StartupProgress progress = loader.getStartupProgress();
+        assertEquals(List.of(TestReportingService.class, TestPrefillService.class), progress.getDeferred());
+        assertFalse(progress.isDone());
+        assertEquals(0, progress.getStarted());
+
+        //Unregistering waits for the service being started, after which the removed service is skipped
+        Thread unregister = Thread.ofPlatform().start(() -> loader.unregister(TestPrefillService.class));
+        while(unregister.getState() != Thread.State.WAITING)
+            Thread.onSpinWait();
+
+        TestReportingService.RELEASE.countDown();
+        unregister.join();
+        assertSame(progress, progress.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(1, progress.getStarted());
+        assertEquals(List.of(TestReportingService.class), progress.getDeferred());
+        assertTrue(progress.getFailed().isEmpty());
+        assertNull(loader.getStartupProgress());
+        assertTrue(loader.awaitReady(Duration.ofSeconds(5)));
+        assertNull(loader.resolve(TestPrefillService.class));
+
+        //Late registrations are checked against tiers too, and later tiers are still started in the background
+        assertThrows(IllegalStateException.class, () -> loader.register(0, TestPrefillService.class));
+        assertNull(loader.resolve(TestPrefillService.class));
+        loader.register(2, TestPrefillService.class);
+        Thread started = TestPrefillService.STARTED.poll(5, TimeUnit.SECONDS);
+        assertNotNull(started);
+        assertNotSame(Thread.currentThread(), started);
+        loader.stop();
+
+        //Serving services can't wait for services started in the background
+        ServiceLoader invalid = new ServiceLoader();
+        invalid.register(TestServingService.class, TestReportingService.class);
+        invalid.register(0, TestPrefillService.class);
+        assertThrows(IllegalStateException.class, invalid::init);
+    }
+
+    @Test
+    public void lifecycleListener() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<LifecycleEvent> events = new LinkedBlockingQueue<>();
+        loader.addLifecycleListener(event -> {
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        });
+
+        //The whole lifecycle runs while the listener is still blocked on the first event
+        loader.register(TestService.class, TestDependencyService.class, TestInjectService.class);
+        loader.init();
+        loader.start();
+        loader.stop();
+        release.countDown();
+
+        List<LifecycleEventType> types = new ArrayList<>();
+        LifecycleEvent previous = null;
+        for(int i = 0; i < 12; i++) {
+            LifecycleEvent event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            if(event.getService() != TestDependencyService.class)
+                continue;
+
+            if(previous != null)
+                assertFalse(event.getTimestamp().isBefore(previous.getTimestamp()));
+
+            types.add(event.getType());
+            previous = event;
+        }
+        assertEquals(List.of(LifecycleEventType.REGISTERED, LifecycleEventType.INITIALIZED, LifecycleEventType.STARTED, LifecycleEventType.STOPPED), types);
+
+        //A full queue drops events instead of waiting for the listener
+        CountDownLatch blocked = new CountDownLatch(1);
+        LifecycleDispatcher dispatcher = new LifecycleDispatcher(4);
+        dispatcher.addListener(event -> {
+            try {
+                blocked.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        int rejected = 0;
+        for(int i = 0; i < 10; i++)
+            if(!dispatcher.publish(LifecycleEventType.STARTED, TestService.class, null))
+                rejected++;
+
+        assertTrue(rejected >= 5);
+        assertEquals(rejected, dispatcher.getDropped());
+        blocked.countDown();
+        dispatcher.close();
+
+        //Failures of a sequential start are reported as well
+        ServiceLoader failing = new ServiceLoader();
+        BlockingQueue<LifecycleEvent> failures = new LinkedBlockingQueue<>();
+        failing.addLifecycleListener(event -> {
+            if(event.getType() == LifecycleEventType.FAILED)
+                failures.add(event);
+        });
+        failing.register(TestFailingService.class);
+        failing.init();
+        assertThrows(IllegalStateException.class, failing::start);
+
+        LifecycleEvent failure = failures.poll(5, TimeUnit.SECONDS);
+        assertNotNull(failure);
+        assertEquals(TestFailingService.class, failure.getService());
+        assertEquals(TestFailingService.class.getSimpleName(), failure.getCause().getMessage());
+        assertEquals(ServiceState.FAILED, failing.getContainers().get(0).getState());
+        failing.stop();
+    }
+
+    public static class TestService implements IService {
+
+        @Inject
+        private TestDependencyService test;
+
+        @Inject
+        private TestInjectService testInjectService;
+
+        public TestService() {
+        }
+
+    }
+
+    public static class TestDependencyService implements IService {
+
+        public TestDependencyService(TestInjectService service) {
+        }
+
+    }
+
+    public static class TestInjectService implements IService {
+
+    }
+
+    public static class HalfWayService implements IService {
+
+        @Inject
+        private TestService service;
+
+    }
+
+    public interface TestPlugin extends IService {
+
+    }
+
+    public static class TestPluginA implements TestPlugin {
+
+        public TestPluginA(TestPluginB plugin) {
+        }
+
+    }
+
+    public static class TestPluginB implements TestPlugin {
+
+    }
+
+    public static class TestPluginC implements TestPlugin {
+
+    }
+
+    public static class TestPluginRegistry implements IService {
+
+        @Inject
+        private List<TestPlugin> list;
+
+        @Inject
+        private TestPlugin[] array;
+
+    }
+
+    public static class TestListenerService implements IService {
+
+        private final List<String> strings = new ArrayList<>();
+        private final List<Object> objects = new ArrayList<>();
+        private final CountDownLatch async = new CountDownLatch(3);
+
+        @Subscribe
+        private void onString(String event) {
+            strings.add(event);
+        }
+
+        @Subscribe
+        public void onObject(Object event) {
+            objects.add(event);
+        }
+
+        @Subscribe(async = true)
+        public void onAsync(CharSequence event) {
+            async.countDown();
+        }
+
+    }
+
+    public static class TestScheduledService implements IService {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch latch = new CountDownLatch(3);
+
+        @Scheduled(rate = 10)
+        private void tick() {
+            count.incrementAndGet();
+            latch.countDown();
+        }
+
+    }
+
+    public static class TestWarmDependencyService implements IService {
+
+        private volatile boolean warm;
+
+        @Override
+        public void warmup() {
+            try {
+                Thread.sleep(20);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            warm = true;
+        }
+
+    }
+
+    public static class TestWarmService implements IService {
+
+        private final TestWarmDependencyService dependency;
+        private volatile boolean warm, dependencyWarm;
+
+        public TestWarmService(TestWarmDependencyService dependency) {
+            this.dependency = dependency;
+        }
+
+        @Override
+        public void warmup() {
+            dependencyWarm = dependency.warm;
+            warm = true;
+        }
+
+    }
+
+    public static class TestSlowStopService implements IService {
+
+        private static final BlockingQueue<Thread> STOPPING = new LinkedBlockingQueue<>();
+        private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+        private volatile boolean stopped;
+
+        @Override
+        public void stop() {
+            stopped = true;
+            STOPPING.add(Thread.currentThread());
+            try {
+                RELEASE.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    public static class TestStopService implements IService {
+
+        private final TestSlowStopService dependency;
+        private volatile boolean stoppedFirst;
+
+        public TestStopService(TestSlowStopService dependency) {
+            this.dependency = dependency;
+        }
+
+        @Override
+        public void stop() {
+            stoppedFirst = !dependency.stopped;
+        }
+
+    }
+
+    public interface TestGreeter extends IService {
+
+        String greet();
+
+    }
+
+    public static class TestEnglishGreeter implements TestGreeter {
+
+        @Override
+        public String greet() {
+            return "hello";
+        }
+
+    }
+
+    public static class TestDutchGreeter implements TestGreeter {
+
+        @Override
+        public String greet() {
+            return "hallo";
+        }
+
+    }
+
+    public static class TestCyclicGreeter extends TestDutchGreeter {
+
+        @Inject
+        private TestGreeterClient client;
+
+    }
+
+    public static class TestBrokenGreeter extends TestDutchGreeter {
+
+        public TestBrokenGreeter() {
+            throw new IllegalStateException("broken");
+        }
+
+    }
+
+    public static class TestUnstartableGreeter extends TestDutchGreeter {
+
+        @Override
+        public void start() {
+            throw new IllegalStateException("unstartable");
+        }
+
+    }
+
+    public static class TestCycleA implements IService {
+
+        @Inject
+        private TestCycleB b;
+
+    }
+
+    public static class TestCycleB implements IService {
+
+        @Inject
+        private TestCycleA a;
+
+    }
+
+    public static class TestGreeterClient implements IService {
+
+        @Inject
+        private TestGreeter greeter;
+
+    }
+
+    public static class TestUnloadPlugin implements IService {
+
+        private final TestInjectService service;
+
+        public TestUnloadPlugin(TestInjectService service) {
+            this.service = service;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+        }
+
+        @Scheduled(rate = 1, unit = TimeUnit.HOURS)
+        public void tick() {
+        }
+
+    }
+
+    public static class TestFailingService implements IService {
+
+        @Override
+        public void start() {
+            throw new IllegalStateException(TestFailingService.class.getSimpleName());
+        }
+
+    }
+
+    public static class TestFailingDependentService implements IService {
+
+        public TestFailingDependentService(TestFailingService service) {
+        }
+
+    }
+
+    public interface TestCounter extends IService {
+
+        void increment();
+
+        long get();
+
+    }
+
+    @Sharded(4)
+    public static class TestShardedCounter implements TestCounter {
+
+        private final AtomicLong count = new AtomicLong();
+
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        public long get() {
+            return count.get();
+        }
+
+    }
+
+    public interface TestCalculator extends IService {
+
+        int add(int a, int b);
+
+        long divide(long a, long b);
+
+    }
+
+    public static class TestSimpleCalculator implements TestCalculator {
+
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        public long divide(long a, long b) {
+            return a / b;
+        }
+
+    }
+
+    public interface TestLookup extends IService {
+
+        String lookup(int id);
+
+        long square(long value);
+
+        int getCalls();
+
+        int getSquares();
+
+    }
+
+    public static class TestCachedLookup implements TestLookup {
+
+        private final AtomicInteger calls = new AtomicInteger(), squares = new AtomicInteger();
+
+        @Cacheable(maximumSize = 100)
+        public String lookup(int id) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return "value-" + id;
+        }
+
+        @Cacheable(expireAfterWrite = 50)
+        public long square(long value) {
+            squares.incrementAndGet();
+            return value * value;
+        }
+
+        public int getCalls() {
+            return calls.get();
+        }
+
+        public int getSquares() {
+            return squares.get();
+        }
+
+    }
+
+    public interface TestFetcher extends IService {
+
+        CompletableFuture<String> fetch(String key);
+
+        int getMaxConcurrent();
+
+        int getCount();
+
+    }
+
+    @Async(concurrency = 2)
+    public static class TestAsyncFetcher implements TestFetcher {
+
+        private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+        private final AtomicInteger running = new AtomicInteger(), max = new AtomicInteger(), count = new AtomicInteger();
+
+        public CompletableFuture<String> fetch(String key) {
+            max.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                RELEASE.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            count.incrementAndGet();
+            running.decrementAndGet();
+            return CompletableFuture.completedFuture(key + ":" + Thread.currentThread().isVirtual());
+        }
+
+        public int getMaxConcurrent() {
+            return max.get();
+        }
+
+        public int getCount() {
+            return count.get();
+        }
+
+    }
+
+    @Async
+    public static class TestHangingFetcher implements TestFetcher {
+
+        private static final BlockingQueue<Thread> FETCHING = new LinkedBlockingQueue<>();
+        private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+        public CompletableFuture<String> fetch(String key) {
+            FETCHING.add(Thread.currentThread());
+            try {
+                RELEASE.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return CompletableFuture.completedFuture(key);
+        }
+
+        public int getMaxConcurrent() {
+            return 1;
+        }
+
+        public int getCount() {
+            return 0;
+        }
+
+    }
+
+    public interface TestRepository extends IService {
+
+        CompletableFuture<String> load(int id);
+
+        Map<Integer, String> loadAll(List<Integer> ids);
+
+        int getBulkCalls();
+
+    }
+
+    public static class TestBatchedRepository implements TestRepository {
+
+        private final AtomicInteger bulkCalls = new AtomicInteger();
+
+        @Batched(bulk = "loadAll", maxSize = 50, window = 20)
+        public CompletableFuture<String> load(int id) {
+            return CompletableFuture.completedFuture(loadAll(List.of(id)).get(id));
+        }
+
+        public Map<Integer, String> loadAll(List<Integer> ids) {
+            bulkCalls.incrementAndGet();
+            Map<Integer, String> map = new HashMap<>();
+            ids.forEach(id -> map.put(id, "entity-" + id));
+            return map;
+        }
+
+        public int getBulkCalls() {
+            return bulkCalls.get();
+        }
+
+    }
+
+    public interface TestExtension extends IService {}
+
+    public static class TestFirstExtension implements TestExtension {
+
+        private static final AtomicInteger CREATED = new AtomicInteger();
+
+        public TestFirstExtension() {
+            CREATED.incrementAndGet();
+        }
+
+    }
+
+    public static class TestSecondExtension implements TestExtension {}
+
+    public static class TestPreloadService implements IService {
+
+        @Inject
+        private TestPreloadDependency dependency;
+
+    }
+
+    public static class TestPreloadDependency implements IService {
+
+        static {
+            preloadThread = Thread.currentThread();
+            PRELOADED.countDown();
+        }
+
+    }
+
+    public static class TestFinalService implements IService {
+
+        private final TestDependencyService dependency;
+
+        public TestFinalService(TestDependencyService dependency) {
+            this.dependency = dependency;
+        }
+
+    }
+
+    public record TestRecordService(TestDependencyService dependency) implements IService {}
+
+    public static class TestQuickService implements IService {
+
+        @Override
+        public void start() {
+            TestCriticalService.STARTED.add(this);
+        }
+
+    }
+
+    public static class TestCriticalService implements IService {
+
+        private static final Queue<IService> STARTED = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void start() {
+            STARTED.add(this);
+        }
+
+    }
+
+    public static class TestCriticalDependentService implements IService {
+
+        public TestCriticalDependentService(TestCriticalService service) {
+        }
+
+    }
+
+    public static class TestServingService implements IService {
+
+    }
+
+    @Tier(1)
+    public static class TestReportingService implements IService {
+
+        private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+        @Inject
+        private TestServingService serving;
+
+        @Override
+        public void start() {
+            try {
+                RELEASE.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    public static class TestPrefillService implements IService {
+
+        private static final BlockingQueue<Thread> STARTED = new LinkedBlockingQueue<>();
+
+        public TestPrefillService(TestReportingService reporting) {
+        }
+
+        @Override
+        public void start() {
+            STARTED.add(Thread.currentThread());
+        }
+
+    }
+
+    private static class TestPluginClassLoader extends ClassLoader {
+
+        private TestPluginClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if(!name.equals(TestUnloadPlugin.class.getName()))
+                return super.loadClass(name, resolve);
+
+            synchronized(getClassLoadingLock(name)) {
+                Class<?> type = findLoadedClass(name);
+                if(type != null)
+                    return type;
+
+                try(InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    byte[] bytes = in.readAllBytes();
+                    return defineClass(name, bytes, 0, bytes.length);
+                } catch(IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
 
     }
 
@@ -0,0 +1,142 @@
+import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.enums.LoaderOption;
+import nl.iobyte.serviceloader.interfaces.IService;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Boots a loader with generated services in fresh JVMs, measuring time from JVM launch until every service started.
+ * Only run by the benchmark profile: mvn test -P benchmark -Dstartup.forks=10 -Dstartup.size=5000
+ */
+public class StartupBenchmark {
+
+    private static final int FORKS = Integer.getInteger("startup.forks", 5);
+    private static final int SIZE = Integer.getInteger("startup.size", 2_000);
+
+    @Test
+    public void coldStart() throws Exception {
+        System.out.printf("%d services, %d forks per mode%n", SIZE, FORKS);
+        System.out.printf("%-22s %10s %10s %10s %10s %10s %12s%n", "mode", "p50 ms", "p90 ms", "max ms", "boot ms", "heap MB", "non-heap MB");
+        for(Mode mode : Mode.values()) {
+            List<long[]> samples = new ArrayList<>(FORKS);
+            for(int i = 0; i < FORKS; i++)
+                samples.add(fork(mode));
+
+            long[] total = samples.stream().mapToLong(sample -> sample[0]).sorted().toArray();
+            System.out.printf(
+                    "%-22s %10.1f %10.1f %10.1f %10.1f %10.1f %12.1f%n",
+                    mode.name().toLowerCase(),
+                    total[total.length / 2] / 1e6,
+                    total[(int) Math.ceil(total.length * 0.9) - 1] / 1e6,
+                    total[total.length - 1] / 1e6,
+                    samples.stream().mapToLong(sample -> sample[1]).sorted().toArray()[FORKS / 2] / 1e6,
+                    samples.stream().mapToLong(sample -> sample[2]).average().orElse(0) / (1 << 20),
+                    samples.stream().mapToLong(sample -> sample[3]).average().orElse(0) / (1 << 20)
+            );
+        }
+    }
+
+    /**
+     * Boot loader in a fresh JVM
+     * @param mode startup mode
+     * @return nanoseconds from launch to started, nanoseconds of booting the loader, heap bytes and non-heap bytes used
+     */
+    private static long[] fork(Mode mode) throws IOException, InterruptedException {
+        //Launch is timed by the parent, the JVM itself only knows its start time in milliseconds
+        long launch = System.nanoTime(), total = 0;
+        Process process = new ProcessBuilder(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                Boot.class.getName(),
+                mode.name(),
+                String.valueOf(SIZE)
+        ).redirectErrorStream(true).start();
+
+        String result = null;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.startsWith("started ") && result == null) {
+                    result = line;
+                    total = System.nanoTime() - launch;
+                }
+            }
+        }
+
+        assertEquals(0, process.waitFor());
+        assertTrue("fork of " + mode + " did not start", result != null);
+
+        long[] values = Arrays.stream(result.substring(8).split(" ")).mapToLong(Long::parseLong).toArray();
+        return new long[]{total, values[0], values[1], values[2]};
+    }
+
+    /**
+     * Compared ways of starting services
+     */
+    private enum Mode {
+
+        SEQUENTIAL_REFLECTION(false),
+        SEQUENTIAL_GENERATED(false, LoaderOption.GENERATED_INJECTORS),
+        PARALLEL_REFLECTION(true),
+        PARALLEL_GENERATED(true, LoaderOption.GENERATED_INJECTORS);
+
+        private final boolean parallel;
+        private final LoaderOption[] options;
+
+        Mode(boolean parallel, LoaderOption... options) {
+            this.parallel = parallel;
+            this.options = options;
+        }
+
+    }
+
+    /**
+     * Entry point of forked JVMs, prints the boot time and memory used once every service started
+     */
+    public static class Boot {
+
+        public static void main(String[] args) {
+            Mode mode = Mode.valueOf(args[0]);
+            List<Class<? extends IService>> types = new ServiceGenerator().random(Integer.parseInt(args[1]), 4, 42);
+
+            long start = System.nanoTime();
+            ServiceLoader loader = new ServiceLoader(mode.options);
+            loader.register(types);
+            if(mode.parallel) {
+                if(loader.startIsolated().isDegraded())
+                    throw new IllegalStateException("startup failed");
+            } else {
+                loader.init();
+                loader.start();
+            }
+
+            long boot = System.nanoTime() - start;
+            long heap = 0, nonHeap = 0;
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if(pool.getType() == MemoryType.HEAP) {
+                    heap += pool.getUsage().getUsed();
+                } else {
+                    nonHeap += pool.getUsage().getUsed();
+                }
+            }
+
+            System.out.println("started " + boot + " " + heap + " " + nonHeap);
+            loader.stop();
+        }
+
+    }
+
+}
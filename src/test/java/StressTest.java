@@ -0,0 +1,274 @@
+import nl.iobyte.serviceloader.ServiceLoader;
+import nl.iobyte.serviceloader.annotations.Inject;
+import nl.iobyte.serviceloader.enums.LifecycleEventType;
+import nl.iobyte.serviceloader.events.LifecycleDispatcher;
+import nl.iobyte.serviceloader.interfaces.IService;
+import nl.iobyte.serviceloader.objects.ServiceContainer;
+import nl.iobyte.serviceloader.reflections.ReflectionType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Races lifecycle, registration and resolution calls from several threads released at the same moment,
+ * checking every service is created, started and stopped at most once and never out of order
+ */
+public class StressTest {
+
+    private static final int THREADS = 4, ROUNDS = 500;
+
+    @Test
+    public void containerTransitions() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        for(int round = 0; round < ROUNDS; round++) {
+            StressContainerService.CREATED.clear();
+            ServiceContainer<StressContainerService> container = new ServiceContainer<>(ReflectionType.of(StressContainerService.class), loader);
+
+            //Every thread runs the transitions in another order
+            race(thread -> {
+                for(int i = 0; i < 3; i++) {
+                    switch((thread + i) % 3) {
+                        case 0 -> container.init();
+                        case 1 -> container.start();
+                        case 2 -> container.stop();
+                    }
+                }
+            });
+
+            container.stop();
+            assertTrue(StressContainerService.CREATED.size() <= 1);
+            for(StressContainerService service : StressContainerService.CREATED)
+                service.assertLifecycle();
+        }
+    }
+
+    @Test
+    public void loaderLifecycle() throws Exception {
+        for(int round = 0; round < ROUNDS; round++) {
+            StressLoaderService.CREATED.clear();
+            StressLoaderDependency.CREATED.clear();
+            ServiceLoader loader = new ServiceLoader();
+            loader.register(StressLoaderService.class, StressLoaderDependency.class);
+
+            race(thread -> {
+                loader.init();
+                loader.start();
+                loader.resolve(StressLoaderService.class);
+                loader.stop();
+            });
+
+            assertEquals(1, StressLoaderService.CREATED.size());
+            assertEquals(1, StressLoaderDependency.CREATED.size());
+            StressLoaderService service = StressLoaderService.CREATED.peek();
+            service.assertLifecycle();
+            assertEquals(1, service.stops.get());
+            assertSame(StressLoaderDependency.CREATED.peek(), service.dependency);
+        }
+    }
+
+    @Test
+    public void registerWhileRunning() throws Exception {
+        ServiceGenerator generator = new ServiceGenerator();
+        List<Class<? extends IService>> types = generator.fan(THREADS * 50 + 1);
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(types.get(0));
+        loader.init();
+        loader.start();
+
+        //Registrations race each other and readers, each registered service is started right away
+        race(thread -> {
+            for(int i = 1 + thread; i < types.size(); i += THREADS) {
+                loader.register(types.get(i));
+                assertNotNull(loader.resolve(types.get(i)));
+                loader.resolve(types.get(1 + (i * 7) % (types.size() - 1)));
+                loader.resolveAll(IService.class);
+            }
+        });
+
+        types.forEach(type -> {
+            assertEquals(1, generator.getCount(type));
+            assertNotNull(loader.resolve(type));
+        });
+        assertEquals(types.size(), loader.resolveAll(IService.class).size());
+        loader.stop();
+    }
+
+    @Test
+    public void registerDuringTransition() throws Exception {
+        ServiceLoader loader = new ServiceLoader();
+        loader.register(StressBlockingService.class);
+        loader.init();
+        Thread starting = Thread.ofPlatform().start(loader::start);
+        assertTrue(StressBlockingService.STARTING.await(10, TimeUnit.SECONDS));
+
+        //Registration only waits for the snapshot of a transition, not for the services it starts
+        loader.register(StressLateService.class, StressLateDependency.class);
+        assertNotNull(loader.resolve(StressLateService.class));
+        assertSame(loader.resolve(StressLateDependency.class), loader.resolve(StressLateService.class).dependency);
+
+        StressBlockingService.RELEASE.countDown();
+        assertTrue(starting.join(Duration.ofSeconds(10)));
+        loader.stop();
+    }
+
+    @Test
+    public void lifecycleEvents() throws Exception {
+        //Small ring laps many times, every accepted event must arrive exactly once
+        LifecycleDispatcher dispatcher = new LifecycleDispatcher(16);
+        AtomicInteger delivered = new AtomicInteger();
+        dispatcher.addListener(event -> delivered.incrementAndGet());
+
+        AtomicInteger accepted = new AtomicInteger();
+        race(thread -> {
+            for(int i = 0; i < ROUNDS * 20; i++)
+                if(dispatcher.publish(LifecycleEventType.STARTED, StressService.class, null))
+                    accepted.incrementAndGet();
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(delivered.get() < accepted.get() && System.nanoTime() < deadline)
+            Thread.sleep(1);
+
+        dispatcher.close();
+        assertEquals(accepted.get(), delivered.get());
+        assertEquals(THREADS * ROUNDS * 20, accepted.get() + dispatcher.getDropped());
+    }
+
+    /**
+     * Run action on threads released at the same moment, rethrowing the first failure
+     * @param action action receiving index of thread
+     */
+    private static void race(IntConsumer action) throws Exception {
+        CountDownLatch ready = new CountDownLatch(THREADS), go = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for(int i = 0; i < THREADS; i++) {
+            int index = i;
+            threads.add(Thread.ofPlatform().start(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    action.accept(index);
+                } catch(Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+
+        ready.await();
+        go.countDown();
+        for(Thread thread : threads)
+            assertTrue(thread.join(Duration.ofSeconds(10)));
+
+        if(failure.get() instanceof Error error)
+            throw error;
+
+        if(failure.get() instanceof Exception exception)
+            throw exception;
+    }
+
+    /**
+     * Records its transitions, failing on any transition out of order
+     */
+    public static abstract class StressService implements IService {
+
+        private final AtomicInteger phase = new AtomicInteger();
+        private final AtomicInteger starts = new AtomicInteger();
+        protected final AtomicInteger stops = new AtomicInteger();
+        private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void start() {
+            starts.incrementAndGet();
+            if(!phase.compareAndSet(0, 1))
+                violations.add("start in phase " + phase.get());
+
+            Thread.yield();
+            phase.compareAndSet(1, 2);
+        }
+
+        @Override
+        public void stop() {
+            stops.incrementAndGet();
+            if(!phase.compareAndSet(2, 3))
+                violations.add("stop in phase " + phase.get());
+        }
+
+        void assertLifecycle() {
+            assertTrue(violations.toString(), violations.isEmpty());
+            assertTrue(starts.get() <= 1);
+            assertEquals(starts.get(), stops.get());
+        }
+
+    }
+
+    public static final class StressContainerService extends StressService {
+
+        private static final Queue<StressContainerService> CREATED = new ConcurrentLinkedQueue<>();
+
+        public StressContainerService() {
+            CREATED.add(this);
+        }
+
+    }
+
+    public static final class StressLoaderService extends StressService {
+
+        private static final Queue<StressLoaderService> CREATED = new ConcurrentLinkedQueue<>();
+
+        @Inject
+        private StressLoaderDependency dependency;
+
+        public StressLoaderService() {
+            CREATED.add(this);
+        }
+
+    }
+
+    public static class StressBlockingService implements IService {
+
+        private static final CountDownLatch STARTING = new CountDownLatch(1), RELEASE = new CountDownLatch(1);
+
+        @Override
+        public void start() {
+            STARTING.countDown();
+            try {
+                RELEASE.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    public static class StressLateService implements IService {
+
+        @Inject
+        private StressLateDependency dependency;
+
+    }
+
+    public static class StressLateDependency implements IService {}
+
+    public static final class StressLoaderDependency implements IService {
+
+        private static final Queue<StressLoaderDependency> CREATED = new ConcurrentLinkedQueue<>();
+
+        public StressLoaderDependency() {
+            CREATED.add(this);
+        }
+
+    }
+
+}